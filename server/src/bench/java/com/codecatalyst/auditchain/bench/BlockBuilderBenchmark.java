@@ -0,0 +1,100 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.config.Config;
+import com.codecatalyst.auditchain.grpc.BlockBuilder;
+import com.codecatalyst.auditchain.grpc.Mempool;
+import com.codecatalyst.auditchain.grpc.MempoolOverflowPolicy;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.util.LatencyHistogram;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Sustained throughput and submit-to-commit latency of the adaptive block builder.
+ *
+ * A producer submits audits into a mempool at a fixed offered rate while a leader loop
+ * ticks like the auto-proposal scheduler, cuts blocks with {@link BlockBuilder} and
+ * "commits" them with a simulated consensus round: a fixed round trip plus a per-audit
+ * cost (signature checks, hashing, disk). Latency is measured per audit from its
+ * submission to the end of its block's round.
+ *
+ * For reference, the previous scheduler (3 audits every 5 seconds) is capped at 0.6
+ * audits/s regardless of load.
+ */
+public class BlockBuilderBenchmark {
+
+    private static final int[] OFFERED_RATES = {100, 1_000, 5_000, 20_000, 50_000};
+    private static final long RUN_SECONDS = 10;
+    private static final long ROUND_TRIP_MICROS = 30_000;
+    private static final long PER_AUDIT_MICROS = 40;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-14s %-14s %-10s %-10s %-10s %-12s%n",
+                "offered/s", "committed/s", "p50 (ms)", "p99 (ms)", "blocks", "batch target");
+        for (int rate : OFFERED_RATES) {
+            run(rate);
+        }
+    }
+
+    private static void run(int rate) throws Exception {
+        Mempool mempool = Mempool.open(Files.createTempDirectory("builder-bench"), Integer.MAX_VALUE,
+                MempoolOverflowPolicy.REJECT, false);
+        BlockBuilder builder = new BlockBuilder(Config.BLOCK_MAX_AUDITS, Config.BLOCK_MAX_BYTES,
+                Config.BLOCK_MAX_LINGER_MS, Config.BLOCK_TARGET_COMMIT_MS);
+        ConcurrentHashMap<String, Long> submittedAt = new ConcurrentHashMap<>();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread producer = new Thread(() -> {
+            long intervalNanos = 1_000_000_000L / rate;
+            long next = System.nanoTime();
+            long n = 0;
+            while (running.get()) {
+                CommonProto.FileAudit audit = SyntheticAudits.audit(n++);
+                submittedAt.put(audit.getReqId(), System.nanoTime());
+                mempool.add(audit);
+                next += intervalNanos;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        });
+
+        long committed = 0;
+        long blocks = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(RUN_SECONDS);
+        producer.start();
+        while (System.nanoTime() < end) {
+            if (!builder.shouldCut(mempool, System.currentTimeMillis())) {
+                Thread.sleep(Config.BLOCK_BUILDER_TICK_MS);
+                continue;
+            }
+            long roundStart = System.nanoTime();
+            List<CommonProto.FileAudit> batch = builder.nextBatch(mempool);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS + PER_AUDIT_MICROS * batch.size()));
+            long now = System.nanoTime();
+            for (CommonProto.FileAudit audit : batch) {
+                latency.recordNanos(now - submittedAt.remove(audit.getReqId()));
+            }
+            mempool.removeAll(batch.stream().map(CommonProto.FileAudit::getReqId).collect(Collectors.toList()));
+            builder.recordCommit(batch.size(), (now - roundStart) / 1_000_000, true);
+            committed += batch.size();
+            blocks++;
+        }
+        running.set(false);
+        producer.join();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-14d %-14.0f %-10.1f %-10.1f %-10d %-12d%n", rate, committed / seconds,
+                latency.percentileMicros(50) / 1000.0, latency.percentileMicros(99) / 1000.0,
+                blocks, builder.getBatchTarget());
+    }
+}
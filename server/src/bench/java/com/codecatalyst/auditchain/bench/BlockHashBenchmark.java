@@ -0,0 +1,99 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.grpc.SignatureVerifier;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.util.HashUtil;
+import com.codecatalyst.auditchain.util.Hex;
+import com.codecatalyst.auditchain.util.MerkleEngine;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and allocation per block hash: the previous StringBuilder-based
+ * computeBlockHash against the streaming HashUtil.computeBlockHash.
+ *
+ * Allocation is read from the JVM's per-thread allocated-bytes counter
+ * (com.sun.management.ThreadMXBean), so it covers everything either version allocates,
+ * audit encoding included.
+ */
+public class BlockHashBenchmark {
+
+    private static final int[] BLOCK_SIZES = {10, 100, 1_000};
+    private static final long WARMUP_SECONDS = 3;
+    private static final long MEASURE_SECONDS = 5;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private interface BlockHasher {
+        String hash(int blockId, String prevHash, List<CommonProto.FileAudit> audits, String merkleRoot);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-8s %-12s %-12s %-14s %-12s %-14s%n",
+                "audits", "prev (us)", "prev (B/op)", "stream (us)", "stream (B/op)", "same hash");
+        for (int size : BLOCK_SIZES) {
+            List<CommonProto.FileAudit> audits = SyntheticAudits.audits(0, size);
+            String merkleRoot = MerkleEngine.rootHex(audits);
+            String prevHash = Hex.encode(MessageDigest.getInstance("SHA-256").digest("previous block".getBytes(StandardCharsets.UTF_8)));
+
+            String expected = previousBlockHash(size, prevHash, audits, merkleRoot);
+            boolean same = expected.equals(HashUtil.computeBlockHash(size, prevHash, audits, merkleRoot));
+
+            double[] previous = measure(BlockHashBenchmark::previousBlockHash, size, prevHash, audits, merkleRoot);
+            double[] streaming = measure(HashUtil::computeBlockHash, size, prevHash, audits, merkleRoot);
+            System.out.printf("%-8d %-12.1f %-12.0f %-14.1f %-12.0f %-14s%n",
+                    size, previous[0], previous[1], streaming[0], streaming[1], same);
+        }
+    }
+
+    /** Mean microseconds and allocated bytes per hash, after a warmup period. */
+    private static double[] measure(BlockHasher hasher, int blockId, String prevHash,
+                                    List<CommonProto.FileAudit> audits, String merkleRoot) {
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        while (System.nanoTime() < warmupEnd) {
+            hasher.hash(blockId, prevHash, audits, merkleRoot);
+        }
+
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long runs = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(MEASURE_SECONDS);
+        long now;
+        do {
+            hasher.hash(blockId, prevHash, audits, merkleRoot);
+            runs++;
+            now = System.nanoTime();
+        } while (now < end);
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        return new double[]{(now - start) / 1e3 / runs, (double) allocated / runs};
+    }
+
+    // HashUtil.computeBlockHash as it was before streaming, kept here as the baseline
+    private static String previousBlockHash(int blockId, String prevHash, List<CommonProto.FileAudit> audits, String merkleRoot) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            sb.append(blockId).append(prevHash).append(merkleRoot);
+            for (CommonProto.FileAudit audit : audits) {
+                sb.append(SignatureVerifier.getAuditInJsonFormat(audit));
+            }
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hashBytes = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hashBytes) {
+                hexString.append(String.format("%02x", b));
+            }
+            return hexString.toString();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.storage.AuditIndex;
+import com.codecatalyst.auditchain.storage.BlockLog;
+import com.codecatalyst.auditchain.storage.ChainTip;
+import com.codecatalyst.auditchain.storage.CheckpointManager;
+import com.codecatalyst.auditchain.storage.CommittedRequests;
+import com.codecatalyst.auditchain.storage.DurabilityMode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Cold-start time versus chain length, with and without a checkpoint.
+ *
+ * For each chain length a block log is built in a temp directory with a checkpoint
+ * CHECKPOINT_LAG blocks behind the head (as it would be between two periodic
+ * checkpoints). Startup is then timed the way BlockStorage does it: open the log,
+ * then either replay every block or restore the checkpoint and replay the tail.
+ */
+public class ColdStartBenchmark {
+
+    private static final int[] CHAIN_LENGTHS = {1_000, 10_000, 50_000, 200_000};
+    private static final int AUDITS_PER_BLOCK = 3;
+    private static final int CHECKPOINT_LAG = 500;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-12s %-18s %-18s%n", "blocks", "full replay (ms)", "checkpoint (ms)");
+        for (int length : CHAIN_LENGTHS) {
+            Path dir = Files.createTempDirectory("coldstart");
+            buildChain(dir, length);
+
+            long full = Long.MAX_VALUE;
+            long fromCheckpoint = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                full = Math.min(full, timeStartup(dir, false));
+                fromCheckpoint = Math.min(fromCheckpoint, timeStartup(dir, true));
+            }
+            System.out.printf("%-12d %-18d %-18d%n", length, full, fromCheckpoint);
+        }
+    }
+
+    private static void buildChain(Path dir, int length) throws Exception {
+        BlockLog log = BlockLog.open(dir.resolve("blocklog"), DurabilityMode.NONE, 0);
+        AuditIndex index = new AuditIndex();
+        CommittedRequests committed = new CommittedRequests(dir.resolve("committed"), length * AUDITS_PER_BLOCK, 0.01);
+        ChainTip tip = ChainTip.EMPTY;
+        CheckpointManager checkpoints = new CheckpointManager(dir.resolve("checkpoints"));
+
+        int checkpointAt = Math.max(0, length - CHECKPOINT_LAG);
+        for (int id = 0; id < length; id++) {
+            Block block = SyntheticAudits.block(id, AUDITS_PER_BLOCK);
+            log.append(block);
+            index.indexBlock(block);
+            committed.addBlock(block);
+            tip = tip.advance(block, true);
+            if (id == checkpointAt) {
+                checkpoints.write(checkpoints.snapshot(tip, List.of(), index, committed));
+            }
+        }
+        log.close();
+    }
+
+    private static long timeStartup(Path dir, boolean useCheckpoint) throws Exception {
+        long start = System.nanoTime();
+
+        BlockLog log = BlockLog.open(dir.resolve("blocklog"), DurabilityMode.NONE, 0);
+        AuditIndex index = new AuditIndex();
+        CommittedRequests committed = new CommittedRequests(dir.resolve("committed"),
+                (log.highestBlockId() + 1) * AUDITS_PER_BLOCK, 0.01);
+        ChainTip tip = ChainTip.EMPTY;
+        long replayFrom = 0;
+        if (useCheckpoint) {
+            ChainTip restored = new CheckpointManager(dir.resolve("checkpoints")).loadLatest(index, committed, log);
+            if (restored != null) {
+                tip = restored;
+                replayFrom = restored.getLatestBlockId() + 1;
+            }
+        }
+        for (long id = replayFrom; id <= log.highestBlockId(); id++) {
+            Block block = log.read(id);
+            index.indexBlock(block);
+            committed.addBlock(block);
+            tip = tip.advance(block, true);
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        log.close();
+        if (index.size() != tip.getBlockCount() * AUDITS_PER_BLOCK) {
+            throw new IllegalStateException("restored state is inconsistent: " + tip);
+        }
+        return elapsedMs;
+    }
+}
@@ -0,0 +1,166 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.grpc.Mempool;
+import com.codecatalyst.auditchain.grpc.MempoolOverflowPolicy;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Multi-threaded mempool ingest throughput: the shared concurrent {@link Mempool}
+ * against the previous implementation, where every method synchronized on one lock.
+ *
+ * Each writer thread submits its own slice of audits (add plus a contains check, as
+ * submitAudit and whisper do), while one thread keeps draining the oldest audits like
+ * the block proposer and another polls size() like the heartbeat.
+ */
+public class MempoolBenchmark {
+
+    private static final int AUDITS = 400_000;
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+    private static final int DRAIN_BATCH = 100;
+    private static final int RUNS = 3;
+
+    interface Pool {
+        boolean add(CommonProto.FileAudit audit);
+
+        boolean contains(String reqId);
+
+        List<CommonProto.FileAudit> drainOldest(int k);
+
+        int size();
+
+        void clear();
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<CommonProto.FileAudit> audits = SyntheticAudits.audits(0, AUDITS);
+        // WAL off: this measures the in-memory structures (MempoolWalBenchmark covers the WAL)
+        Mempool mempool = Mempool.open(Files.createTempDirectory("mempool-bench"), AUDITS,
+                MempoolOverflowPolicy.REJECT, false);
+        Pool concurrent = new Pool() {
+            public boolean add(CommonProto.FileAudit audit) { return mempool.add(audit).isAccepted(); }
+            public boolean contains(String reqId) { return mempool.contains(reqId); }
+            public List<CommonProto.FileAudit> drainOldest(int k) { return mempool.drainOldest(k); }
+            public int size() { return mempool.size(); }
+            public void clear() { mempool.clear(); }
+        };
+        Pool synchronizedPool = new SynchronizedPool();
+
+        // Warm-up
+        run(concurrent, audits, 4);
+        run(synchronizedPool, audits, 4);
+
+        System.out.printf("%-8s %-22s %-22s%n", "threads", "synchronized (ops/s)", "concurrent (ops/s)");
+        for (int threads : THREADS) {
+            double baseline = 0;
+            double current = 0;
+            for (int r = 0; r < RUNS; r++) {
+                baseline = Math.max(baseline, run(synchronizedPool, audits, threads));
+                current = Math.max(current, run(concurrent, audits, threads));
+            }
+            System.out.printf("%-8d %-22.0f %-22.0f%n", threads, baseline, current);
+        }
+    }
+
+    private static double run(Pool pool, List<CommonProto.FileAudit> audits, int threads) throws Exception {
+        pool.clear();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        Thread drainer = new Thread(() -> {
+            while (writing.get()) {
+                pool.drainOldest(DRAIN_BATCH);
+            }
+        });
+        Thread heartbeat = new Thread(() -> {
+            long sink = 0;
+            while (writing.get()) {
+                sink += pool.size();
+            }
+            if (sink == 42) System.out.print("");
+        });
+
+        int slice = audits.size() / threads;
+        for (int t = 0; t < threads; t++) {
+            List<CommonProto.FileAudit> mine = audits.subList(t * slice, (t + 1) * slice);
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (CommonProto.FileAudit audit : mine) {
+                        if (!pool.contains(audit.getReqId())) {
+                            pool.add(audit);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        drainer.start();
+        heartbeat.start();
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        writing.set(false);
+        drainer.join();
+        heartbeat.join();
+
+        return slice * (double) threads / (elapsed / 1e9);
+    }
+
+    /** The mempool as it was before: HashMap plus TreeSet behind a single monitor. */
+    private static final class SynchronizedPool implements Pool {
+        private final Map<String, CommonProto.FileAudit> byReqId = new HashMap<>();
+        private final TreeSet<CommonProto.FileAudit> byAge = new TreeSet<>(
+                Comparator.comparingLong(CommonProto.FileAudit::getTimestamp)
+                        .thenComparing(CommonProto.FileAudit::getReqId));
+
+        public synchronized boolean add(CommonProto.FileAudit audit) {
+            if (byReqId.putIfAbsent(audit.getReqId(), audit) != null) {
+                return false;
+            }
+            byAge.add(audit);
+            return true;
+        }
+
+        public synchronized boolean contains(String reqId) {
+            return byReqId.containsKey(reqId);
+        }
+
+        public synchronized List<CommonProto.FileAudit> drainOldest(int k) {
+            List<CommonProto.FileAudit> drained = new ArrayList<>(k);
+            Iterator<CommonProto.FileAudit> it = byAge.iterator();
+            while (drained.size() < k && it.hasNext()) {
+                CommonProto.FileAudit audit = it.next();
+                it.remove();
+                byReqId.remove(audit.getReqId());
+                drained.add(audit);
+            }
+            return drained;
+        }
+
+        public synchronized int size() {
+            return byReqId.size();
+        }
+
+        public synchronized void clear() {
+            byReqId.clear();
+            byAge.clear();
+        }
+    }
+}
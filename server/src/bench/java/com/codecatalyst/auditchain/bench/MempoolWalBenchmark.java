@@ -0,0 +1,73 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.config.Config;
+import com.codecatalyst.auditchain.grpc.Mempool;
+import com.codecatalyst.auditchain.grpc.MempoolOverflowPolicy;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Mempool ingest throughput with the write-ahead log off and on, and the time a
+ * fresh mempool takes to replay the resulting WAL.
+ *
+ * Every run opens a new mempool in its own temp directory and has the writer threads
+ * submit disjoint slices of audits through Mempool.add, which with the WAL on only
+ * returns once the audit's batch has been written (and fsynced, per
+ * Config.MEMPOOL_WAL_FSYNC).
+ */
+public class MempoolWalBenchmark {
+
+    private static final int AUDITS = 200_000;
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    public static void main(String[] args) throws Exception {
+        List<CommonProto.FileAudit> audits = SyntheticAudits.audits(0, AUDITS);
+        System.out.println("WAL fsync per batch: " + Config.MEMPOOL_WAL_FSYNC);
+        System.out.printf("%-8s %-20s %-20s %-16s%n", "threads", "WAL off (ops/s)", "WAL on (ops/s)", "replay (ms)");
+        for (int threads : THREADS) {
+            double off = ingest(Files.createTempDirectory("mempool-nowal"), audits, threads, false);
+            Path walDir = Files.createTempDirectory("mempool-wal");
+            double on = ingest(walDir, audits, threads, true);
+
+            long start = System.nanoTime();
+            Mempool replayed = Mempool.open(walDir, Integer.MAX_VALUE, MempoolOverflowPolicy.REJECT, true);
+            long replayMs = (System.nanoTime() - start) / 1_000_000;
+            if (replayed.size() != audits.size() / threads * threads) {
+                throw new IllegalStateException("replay restored " + replayed.size() + " audits");
+            }
+            System.out.printf("%-8d %-20.0f %-20.0f %-16d%n", threads, off, on, replayMs);
+        }
+    }
+
+    private static double ingest(Path dir, List<CommonProto.FileAudit> audits, int threads, boolean wal) throws Exception {
+        Mempool mempool = Mempool.open(dir, Integer.MAX_VALUE, MempoolOverflowPolicy.REJECT, wal);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        int slice = audits.size() / threads;
+        for (int t = 0; t < threads; t++) {
+            List<CommonProto.FileAudit> mine = audits.subList(t * slice, (t + 1) * slice);
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (CommonProto.FileAudit audit : mine) {
+                        mempool.add(audit);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return slice * (double) threads / (elapsed / 1e9);
+    }
+}
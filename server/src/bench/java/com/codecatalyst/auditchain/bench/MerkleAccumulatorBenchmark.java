@@ -0,0 +1,74 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.grpc.Mempool;
+import com.codecatalyst.auditchain.grpc.MempoolOverflowPolicy;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.util.MerkleEngine;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Merkle root latency per block: hashing every leaf from scratch against reusing the
+ * leaf hashes the mempool computed on admission.
+ *
+ * "propose" is the leader building a root over the audits it drained; "vote" is a
+ * follower checking the root of a proposed block, whose audits are its own parsed
+ * copies (equal to, but not the same instances as, the ones it admitted by whisper).
+ * Audit encodings are warm in both versions, as after signature verification.
+ */
+public class MerkleAccumulatorBenchmark {
+
+    private static final int[] BLOCK_SIZES = {10, 100, 1_000};
+    private static final long WARMUP_SECONDS = 2;
+    private static final long MEASURE_SECONDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-8s %-8s %-16s %-16s %-10s%n", "audits", "path", "scratch (us)", "cached (us)", "same root");
+        for (int size : BLOCK_SIZES) {
+            Mempool mempool = Mempool.open(Files.createTempDirectory("merkle-bench"), Integer.MAX_VALUE,
+                    MempoolOverflowPolicy.REJECT, false);
+            List<CommonProto.FileAudit> admitted = SyntheticAudits.audits(0, size);
+            for (CommonProto.FileAudit audit : admitted) {
+                mempool.add(audit);
+            }
+            List<CommonProto.FileAudit> proposed = new ArrayList<>(size);
+            for (CommonProto.FileAudit audit : admitted) {
+                proposed.add(CommonProto.FileAudit.parseFrom(audit.toByteArray()));
+            }
+
+            report(size, "propose", mempool, admitted);
+            report(size, "vote", mempool, proposed);
+        }
+    }
+
+    private static void report(int size, String path, Mempool mempool, List<CommonProto.FileAudit> audits) {
+        String scratchRoot = MerkleEngine.rootHex(audits);
+        String cachedRoot = MerkleEngine.rootHex(mempool.leafHashes(audits));
+        double scratch = measure(() -> MerkleEngine.rootHex(audits));
+        double cached = measure(() -> MerkleEngine.rootHex(mempool.leafHashes(audits)));
+        System.out.printf("%-8d %-8s %-16.1f %-16.1f %-10s%n", size, path, scratch, cached, scratchRoot.equals(cachedRoot));
+    }
+
+    /** Mean microseconds per root, after a warmup period. */
+    private static double measure(Supplier<String> root) {
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        while (System.nanoTime() < warmupEnd) {
+            root.get();
+        }
+
+        long runs = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(MEASURE_SECONDS);
+        long now;
+        do {
+            root.get();
+            runs++;
+            now = System.nanoTime();
+        } while (now < end);
+        return (now - start) / 1e3 / runs;
+    }
+}
@@ -0,0 +1,143 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.config.Config;
+import com.codecatalyst.auditchain.grpc.PeerFanout;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.BlockCommitResponse;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.BlockVoteResponse;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainServiceGrpc;
+import com.codecatalyst.auditchain.util.LatencyHistogram;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leader round latency (propose + commit) against 8 local peers, one of them black-holed.
+ *
+ * Healthy peers are in-process gRPC servers that take VOTE_WORK_MICROS to vote (standing
+ * in for signature and hash checks). The black-holed peer is a listening socket that is
+ * never read, so the TCP connection opens but no call ever gets an answer.
+ *
+ * "serial" is the previous leader loop: blocking stubs, one peer after another, with the
+ * same per-call deadlines (without them the black-holed peer stalls the round forever).
+ * "fanout" is {@link PeerFanout}.
+ */
+public class PeerFanoutBenchmark {
+
+    private static final int PEERS = 8;
+    private static final int ROUNDS = 200;
+    private static final int AUDITS_PER_BLOCK = 100;
+    private static final long VOTE_WORK_MICROS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        List<Server> servers = new ArrayList<>();
+        List<String> healthy = new ArrayList<>();
+        for (int i = 0; i < PEERS; i++) {
+            Server server = ServerBuilder.forPort(0).addService(new SimulatedPeer()).build().start();
+            servers.add(server);
+            healthy.add("localhost:" + server.getPort());
+        }
+
+        try (ServerSocket blackHole = new ServerSocket(0)) {
+            List<String> withBlackHole = new ArrayList<>(healthy.subList(0, PEERS - 1));
+            withBlackHole.add("localhost:" + blackHole.getLocalPort());
+
+            System.out.printf("%-10s %-16s %-10s %-10s %-10s%n", "mode", "peers", "p50 (ms)", "p99 (ms)", "max (ms)");
+            runSerial("8 healthy", healthy);
+            runSerial("1 black hole", withBlackHole);
+            runFanout("8 healthy", healthy);
+            runFanout("1 black hole", withBlackHole);
+        } finally {
+            for (Server server : servers) {
+                server.shutdownNow();
+            }
+        }
+    }
+
+    private static void runSerial(String label, List<String> peers) {
+        List<ManagedChannel> channels = new ArrayList<>();
+        for (String peer : peers) {
+            channels.add(ManagedChannelBuilder.forTarget(peer).usePlaintext().build());
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        for (int round = 0; round < ROUNDS; round++) {
+            Block block = SyntheticAudits.block(round, AUDITS_PER_BLOCK);
+            long start = System.nanoTime();
+            for (ManagedChannel channel : channels) {
+                try {
+                    BlockChainServiceGrpc.newBlockingStub(channel)
+                            .withDeadlineAfter(Config.PEER_VOTE_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                            .proposeBlock(block);
+                } catch (Exception e) {
+                    // Counted against the block, like the leader does
+                }
+            }
+            for (ManagedChannel channel : channels) {
+                try {
+                    BlockChainServiceGrpc.newBlockingStub(channel)
+                            .withDeadlineAfter(Config.PEER_COMMIT_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                            .commitBlock(block);
+                } catch (Exception e) {
+                    // Ignored, like the leader does
+                }
+            }
+            latency.recordNanos(System.nanoTime() - start);
+        }
+
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow();
+        }
+        print("serial", label, latency);
+    }
+
+    private static void runFanout(String label, List<String> peers) {
+        // Full-block commits, the same calls the serial loop makes
+        PeerFanout fanout = new PeerFanout(peers, Config.PEER_VOTE_DEADLINE_MS,
+                Config.PEER_COMMIT_DEADLINE_MS, Config.PEER_COMMIT_BACKLOG, false);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        for (int round = 0; round < ROUNDS; round++) {
+            Block block = SyntheticAudits.block(round, AUDITS_PER_BLOCK);
+            long start = System.nanoTime();
+            if (fanout.collectVotes(block)) {
+                fanout.commit(block);
+            }
+            latency.recordNanos(System.nanoTime() - start);
+        }
+
+        fanout.shutdown();
+        print("fanout", label, latency);
+    }
+
+    private static void print(String mode, String label, LatencyHistogram latency) {
+        System.out.printf("%-10s %-16s %-10.1f %-10.1f %-10.1f%n", mode, label,
+                latency.percentileMicros(50) / 1000.0, latency.percentileMicros(99) / 1000.0,
+                latency.percentileMicros(100) / 1000.0);
+    }
+
+    private static final class SimulatedPeer extends BlockChainServiceGrpc.BlockChainServiceImplBase {
+        @Override
+        public void proposeBlock(Block request, StreamObserver<BlockVoteResponse> responseObserver) {
+            long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(VOTE_WORK_MICROS);
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            responseObserver.onNext(BlockVoteResponse.newBuilder().setVote(true).setStatus("success").build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void commitBlock(Block request, StreamObserver<BlockCommitResponse> responseObserver) {
+            responseObserver.onNext(BlockCommitResponse.newBuilder().setStatus("success").build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.config.Config;
+import com.codecatalyst.auditchain.grpc.SignatureVerifier;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to verify every signature of a proposed block: the sequential per-audit loop
+ * against {@link SignatureVerifier#verifyAll} on the verification pool.
+ *
+ * Audits are signed with a few 2048-bit RSA keys, the way a handful of client services
+ * sign in production, so public-key parsing is served from the key cache in both modes.
+ */
+public class SignatureBatchBenchmark {
+
+    private static final int[] BLOCK_SIZES = {3, 100, 1_000};
+    private static final int SIGNING_KEYS = 4;
+    private static final long WARMUP_SECONDS = 3;
+    private static final long MEASURE_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<KeyPair> keys = new ArrayList<>();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        for (int i = 0; i < SIGNING_KEYS; i++) {
+            keys.add(generator.generateKeyPair());
+        }
+
+        System.out.println("Verification threads: " + Config.SIGNATURE_VERIFY_THREADS);
+        System.out.printf("%-8s %-18s %-18s %-8s%n", "audits", "sequential (ms)", "verifyAll (ms)", "speedup");
+        for (int size : BLOCK_SIZES) {
+            List<CommonProto.FileAudit> block = signedAudits(size, keys);
+            double sequential = measure(() -> {
+                for (CommonProto.FileAudit audit : block) {
+                    if (!SignatureVerifier.verify(audit)) {
+                        throw new IllegalStateException("signature rejected");
+                    }
+                }
+            });
+            double parallel = measure(() -> {
+                if (!SignatureVerifier.verifyAll(block)) {
+                    throw new IllegalStateException("signature rejected");
+                }
+            });
+            System.out.printf("%-8d %-18.3f %-18.3f %-8.2f%n", size, sequential, parallel, sequential / parallel);
+        }
+    }
+
+    /** Mean milliseconds per run, after a warmup period. */
+    private static double measure(Runnable run) {
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        while (System.nanoTime() < warmupEnd) {
+            run.run();
+        }
+
+        long runs = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(MEASURE_SECONDS);
+        long now;
+        do {
+            run.run();
+            runs++;
+            now = System.nanoTime();
+        } while (now < end);
+        return (now - start) / 1e6 / runs;
+    }
+
+    private static List<CommonProto.FileAudit> signedAudits(int count, List<KeyPair> keys) throws Exception {
+        List<CommonProto.FileAudit> audits = new ArrayList<>(count);
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        for (int i = 0; i < count; i++) {
+            KeyPair key = keys.get(i % keys.size());
+            CommonProto.FileAudit audit = SyntheticAudits.audit(i);
+
+            signer.initSign(key.getPrivate());
+            signer.update(SignatureVerifier.getAuditInJsonFormat(audit).getBytes(StandardCharsets.UTF_8));
+            audits.add(audit.toBuilder()
+                    .setSignature(Base64.getEncoder().encodeToString(signer.sign()))
+                    .setPublicKey("-----BEGIN PUBLIC KEY-----\n"
+                            + Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(key.getPublic().getEncoded())
+                            + "\n-----END PUBLIC KEY-----\n")
+                    .build());
+        }
+        return audits;
+    }
+}
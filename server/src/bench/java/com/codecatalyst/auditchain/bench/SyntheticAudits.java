@@ -0,0 +1,47 @@
+package com.codecatalyst.auditchain.bench;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Deterministic audits and blocks for the benchmarks. */
+final class SyntheticAudits {
+
+    private SyntheticAudits() {
+    }
+
+    static CommonProto.FileAudit audit(long n) {
+        return CommonProto.FileAudit.newBuilder()
+                .setReqId(String.format("req-%012d", n))
+                .setFileInfo(CommonProto.FileInfo.newBuilder()
+                        .setFileId("f" + (n % 1000))
+                        .setFileName("file-" + (n % 1000) + ".json"))
+                .setUserInfo(CommonProto.UserInfo.newBuilder()
+                        .setUserId("u" + (n % 100))
+                        .setUserName("user" + (n % 100)))
+                .setAccessType(CommonProto.AccessType.forNumber(1 + (int) (n % 4)))
+                .setTimestamp(1_747_000_000L + n)
+                .build();
+    }
+
+    static List<CommonProto.FileAudit> audits(long first, int count) {
+        List<CommonProto.FileAudit> audits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            audits.add(audit(first + i));
+        }
+        return audits;
+    }
+
+    /** A block with the given number of audits; hashes are placeholders, not real block hashes. */
+    static Block block(long id, int auditsPerBlock) {
+        return Block.newBuilder()
+                .setId(id)
+                .setHash(String.format("%064x", id + 1))
+                .setPreviousHash(id == 0 ? "genesis" : String.format("%064x", id))
+                .addAllAudits(audits(id * auditsPerBlock, auditsPerBlock))
+                .setMerkleRoot("")
+                .build();
+    }
+}
@@ -1,5 +1,8 @@
 package com.codecatalyst.auditchain.config;
 
+import com.codecatalyst.auditchain.grpc.MempoolOverflowPolicy;
+import com.codecatalyst.auditchain.storage.DurabilityMode;
+
 import java.util.List;
 
 public class Config {
@@ -18,4 +21,69 @@ public class Config {
 
 
     );
+
+    // Number of decoded blocks kept in BlockStorage's LRU cache
+    public static final int BLOCK_CACHE_CAPACITY = 1024;
+
+    // Number of parsed client public keys kept by SignatureVerifier, keyed by PEM string
+    public static final int PUBLIC_KEY_CACHE_CAPACITY = 1024;
+
+    // Audits remembered as already signature-verified (about one full mempool's worth)
+    public static final int VERIFIED_AUDIT_CACHE_CAPACITY = 100_000;
+
+    // Inclusion proofs (block headers with Merkle path) kept by AuditProofs, keyed by req_id
+    public static final int AUDIT_PROOF_CACHE_CAPACITY = 100_000;
+
+    // Blocks whose full Merkle tree AuditProofs keeps, so further proofs in them are only a path walk
+    public static final int PROOF_TREE_CACHE_CAPACITY = 128;
+
+    // Threads verifying a proposed block's signatures in parallel
+    public static final int SIGNATURE_VERIFY_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // How committed blocks reach stable storage, and how long a group commit may wait to batch fsyncs
+    public static final DurabilityMode BLOCK_DURABILITY = DurabilityMode.GROUP_COMMIT;
+    public static final long GROUP_COMMIT_WINDOW_MS = 2;
+
+    // Write a checkpoint of the derived chain state every this many blocks
+    public static final int CHECKPOINT_INTERVAL_BLOCKS = 1000;
+
+    // Maximum audits held in the in-memory mempool, and what happens to new audits beyond that
+    public static final int MEMPOOL_CAPACITY = 100_000;
+    public static final MempoolOverflowPolicy MEMPOOL_OVERFLOW_POLICY = MempoolOverflowPolicy.SPILL;
+
+    // Log accepted audits to the mempool WAL so they survive a restart, fsyncing each WAL batch
+    public static final boolean MEMPOOL_WAL_ENABLED = true;
+    public static final boolean MEMPOOL_WAL_FSYNC = true;
+
+    // Block builder: a block is cut at BLOCK_MAX_AUDITS audits / BLOCK_MAX_BYTES bytes of audits or once
+    // audits have waited BLOCK_MAX_LINGER_MS; the batch size adapts to keep commits near BLOCK_TARGET_COMMIT_MS
+    public static final int BLOCK_MAX_AUDITS = 500;
+    public static final long BLOCK_MAX_BYTES = 1024 * 1024;
+    public static final long BLOCK_MAX_LINGER_MS = 200;
+    public static final long BLOCK_TARGET_COMMIT_MS = 500;
+    public static final long BLOCK_BUILDER_TICK_MS = 20;
+
+    // Blocks the leader may have proposed but not yet committed (1 = one block at a time), and how long a
+    // follower waits for a missing parent proposal when proposals for consecutive blocks arrive out of order
+    public static final int CONSENSUS_PIPELINE_DEPTH = 4;
+    public static final long PIPELINE_PARENT_WAIT_MS = 500;
+    public static final int PENDING_PROPOSALS_CAPACITY = 64;
+
+    // Deadlines for the leader's ProposeBlock and CommitBlock calls, and how many commits may queue up
+    // behind a slow peer before it is left to catch up through recovery
+    public static final long PEER_VOTE_DEADLINE_MS = 1000;
+    public static final long PEER_COMMIT_DEADLINE_MS = 2000;
+    public static final int PEER_COMMIT_BACKLOG = 64;
+
+    // Commit with CommitBlockHeader (block id, hash and req_ids) instead of resending the whole block
+    public static final boolean COMMIT_HEADER_ONLY = true;
+
+    // Committed req_id Bloom filter sizing; memory is about 1.2 bytes per expected audit at 1%
+    public static final long COMMITTED_FILTER_EXPECTED_AUDITS = 20_000_000;
+    public static final double COMMITTED_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    // Background chain verifier: worker threads, run interval and pause between block ranges
+    public static final int VERIFIER_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int VERIFIER_INTERVAL_SECONDS = 300;
+    public static final long VERIFIER_PAUSE_MS = 20;
 }
@@ -0,0 +1,106 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.config.Config;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.proto.fileaudit.FileAuditProto;
+import com.codecatalyst.auditchain.storage.BlockStorage;
+import com.codecatalyst.auditchain.storage.IndexedAudit;
+import com.codecatalyst.auditchain.util.Hex;
+import com.codecatalyst.auditchain.util.LruCache;
+import com.codecatalyst.auditchain.util.MerkleEngine;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the BlockHeader that proves a committed audit is in its block.
+ *
+ * merkle_proof lists the sibling hashes from the audit's leaf up to the root, each
+ * prefixed with the side it sits on ("left:<hex>" or "right:<hex>"), and audit_hashes
+ * holds the audit's own leaf hash. Hashing the leaf up the path the way MerkleEngine
+ * does must give merkle_root.
+ *
+ * Finished headers are cached by req_id, and the full Merkle tree of recently proven
+ * blocks is kept so that proofs for the rest of a block's audits skip rehashing it.
+ * A block id can be saved again with different contents, so both caches are dropped
+ * whenever BlockStorage reports a replaced block, and entries built while a block was
+ * being replaced are taken out again.
+ */
+public class AuditProofs {
+
+    private static final LruCache<String, FileAuditProto.BlockHeader> headers =
+            new LruCache<>(Config.AUDIT_PROOF_CACHE_CAPACITY);
+    private static final LruCache<Long, byte[][][]> trees = new LruCache<>(Config.PROOF_TREE_CACHE_CAPACITY);
+    private static final AtomicLong cachedGeneration = new AtomicLong();
+
+    /** The inclusion proof of a committed audit, or null if no audit with this req_id is on chain. */
+    public static FileAuditProto.BlockHeader headerFor(String reqId) throws Exception {
+        dropIfReplaced();
+        FileAuditProto.BlockHeader header = headers.get(reqId);
+        if (header != null) {
+            return header;
+        }
+        IndexedAudit located = BlockStorage.findAuditByReqId(reqId);
+        return located == null ? null : headerFor(located);
+    }
+
+    public static FileAuditProto.BlockHeader headerFor(IndexedAudit located) throws Exception {
+        long generation = dropIfReplaced();
+        Block block = BlockStorage.loadBlock(located.getBlockId());
+        byte[][][] tree = treeOf(block, generation);
+        int index = located.getPosition();
+        List<byte[]> siblings = MerkleEngine.proof(tree, index);
+
+        FileAuditProto.BlockHeader.Builder header = FileAuditProto.BlockHeader.newBuilder()
+                .setBlockHash(block.getHash())
+                .setBlockNumber(block.getId())
+                .setPreviousBlockHash(block.getPreviousHash())
+                .setMerkleRoot(block.getMerkleRoot())
+                .addAuditHashes(Hex.encode(tree[0][index]));
+        for (byte[] sibling : siblings) {
+            header.addMerkleProof(((index & 1) == 0 ? "right:" : "left:") + Hex.encode(sibling));
+            index >>= 1;
+        }
+
+        FileAuditProto.BlockHeader built = header.build();
+        String reqId = located.getAudit().getReqId();
+        headers.put(reqId, built);
+        // A block replaced while this was built (and the caches cleared since) must not leave a stale entry
+        if (BlockStorage.getReplacedBlockCount() != generation) {
+            headers.remove(reqId);
+        }
+        return built;
+    }
+
+    private static byte[][][] treeOf(Block block, long generation) {
+        byte[][][] tree = trees.get(block.getId());
+        if (tree == null) {
+            tree = MerkleEngine.tree(MerkleEngine.leafHashes(block.getAuditsList()));
+            trees.put(block.getId(), tree);
+            if (BlockStorage.getReplacedBlockCount() != generation) {
+                trees.remove(block.getId());
+            }
+        }
+        return tree;
+    }
+
+    // Clears both caches if a stored block was replaced since they were filled; returns the current generation
+    private static long dropIfReplaced() {
+        long generation = BlockStorage.getReplacedBlockCount();
+        long cached = cachedGeneration.get();
+        if (cached != generation && cachedGeneration.compareAndSet(cached, generation)) {
+            headers.clear();
+            trees.clear();
+        }
+        return generation;
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("headers", headers.stats());
+        stats.put("trees", trees.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,99 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.util.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides when the leader cuts a block and how many audits go into it.
+ *
+ * A block is cut as soon as the mempool holds a full batch, or once the audit next in
+ * line has been in the mempool for maxLingerMillis (counted from its admission, so
+ * audits left over after a size-limited cut do not start a fresh wait), so a lone
+ * audit is committed promptly under light load.
+ * A block never exceeds maxAudits audits or maxBytes of encoded audits.
+ *
+ * The batch target adapts to the observed commit latency (propose to local commit):
+ * while full blocks commit within targetCommitMillis it grows additively, and when a
+ * commit overshoots the target it shrinks multiplicatively, so batches are as large
+ * as the cluster can take without letting commit latency run away.
+ */
+public class BlockBuilder {
+
+    private static final int MIN_BATCH = 1;
+    private static final double DECREASE_FACTOR = 0.7;
+
+    private final int maxAudits;
+    private final long maxBytes;
+    private final long maxLingerMillis;
+    private final long targetCommitMillis;
+    private final int increaseStep;
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+
+    private volatile int batchTarget;
+    private volatile long blocksCut;
+    private volatile long auditsCut;
+
+    public BlockBuilder(int maxAudits, long maxBytes, long maxLingerMillis, long targetCommitMillis) {
+        this.maxAudits = maxAudits;
+        this.maxBytes = maxBytes;
+        this.maxLingerMillis = maxLingerMillis;
+        this.targetCommitMillis = targetCommitMillis;
+        this.increaseStep = Math.max(1, maxAudits / 32);
+        this.batchTarget = Math.max(MIN_BATCH, maxAudits / 8);
+    }
+
+    /** Whether a block should be cut now from the audits pending in the mempool. */
+    public boolean shouldCut(Mempool mempool, long nowMillis) {
+        if (mempool.size() == 0) {
+            return false;
+        }
+        if (mempool.size() >= batchTarget) {
+            return true;
+        }
+        long oldest = mempool.oldestAdmittedAt();
+        return oldest != 0 && nowMillis - oldest >= maxLingerMillis;
+    }
+
+    /** Drains the audits for the next block, oldest first. */
+    public List<CommonProto.FileAudit> nextBatch(Mempool mempool) {
+        List<CommonProto.FileAudit> batch = mempool.drainOldest(batchTarget, maxBytes);
+        if (!batch.isEmpty()) {
+            blocksCut++;
+            auditsCut += batch.size();
+        }
+        return batch;
+    }
+
+    /** Feeds back how long a block of the given size took from proposal to commit. */
+    public void recordCommit(int audits, long latencyMillis, boolean committed) {
+        commitLatency.recordNanos(latencyMillis * 1_000_000);
+        int target = batchTarget;
+        if (!committed || latencyMillis > targetCommitMillis) {
+            target = (int) (target * DECREASE_FACTOR);
+        } else if (audits >= target) {
+            target += increaseStep;
+        }
+        batchTarget = Math.max(MIN_BATCH, Math.min(maxAudits, target));
+    }
+
+    public int getBatchTarget() {
+        return batchTarget;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batch_target", batchTarget);
+        stats.put("max_audits", maxAudits);
+        stats.put("max_bytes", maxBytes);
+        stats.put("max_linger_ms", maxLingerMillis);
+        stats.put("target_commit_ms", targetCommitMillis);
+        stats.put("blocks_cut", blocksCut);
+        stats.put("audits_cut", auditsCut);
+        stats.put("commit_latency", commitLatency.snapshot());
+        return stats;
+    }
+}
@@ -6,23 +6,28 @@ import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainServiceGrpc;
 import com.codecatalyst.auditchain.proto.common.CommonProto;
 import com.codecatalyst.auditchain.util.HashUtil;
-import com.codecatalyst.auditchain.util.MerkleUtil;
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import com.codecatalyst.auditchain.util.MerkleEngine;
+import com.google.protobuf.ByteString;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.stub.ServerCalls;
 import io.grpc.stub.StreamObserver;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.BlockVoteResponse;
 import com.codecatalyst.auditchain.storage.BlockStorage;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.BlockCommitResponse;
-import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.GetBlockResponse;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.CommitBlockHeaderRequest;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.CommitBlockHeaderResponse;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.HeartbeatResponse;
 
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.TriggerElectionRequest;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.TriggerElectionResponse;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.NotifyLeadershipRequest;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.NotifyLeadershipResponse;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -30,16 +35,38 @@ import java.util.concurrent.TimeUnit;
 
 public class BlockChainServiceImpl extends BlockChainServiceGrpc.BlockChainServiceImplBase {
 
-    private final Mempool mempool = new Mempool();
+    private final Mempool mempool = Mempool.getInstance();
+    private final BlockBuilder blockBuilder = new BlockBuilder(Config.BLOCK_MAX_AUDITS, Config.BLOCK_MAX_BYTES,
+            Config.BLOCK_MAX_LINGER_MS, Config.BLOCK_TARGET_COMMIT_MS);
+    private final PeerFanout fanout = new PeerFanout(Config.PEER_ADDRESSES, Config.PEER_VOTE_DEADLINE_MS,
+            Config.PEER_COMMIT_DEADLINE_MS, Config.PEER_COMMIT_BACKLOG, Config.COMMIT_HEADER_ONLY);
+    private final ProposalPipeline pipeline = new ProposalPipeline(mempool, blockBuilder, fanout, Config.CONSENSUS_PIPELINE_DEPTH);
+    private final PendingProposals pendingProposals = new PendingProposals(Config.PENDING_PROPOSALS_CAPACITY);
     private final String selfAddress = Config.NODE_ID; // define in config
 
 
     @Override
     public void whisperAuditRequest(CommonProto.FileAudit audit, StreamObserver<BlockChainProto.WhisperResponse> responseObserver) {
-        mempool.add(audit);  // assume already validated at source node
+        // Verify on arrival, so the signature is already known good when the audit is proposed
+        if (!VerifiedAuditCache.verify(audit)) {
+            responseObserver.onNext(BlockChainProto.WhisperResponse.newBuilder()
+                    .setStatus("failure")
+                    .setErrorMessage("Invalid signature")
+                    .build());
+            responseObserver.onCompleted();
+            return;
+        }
+
+        Mempool.Admission admission = mempool.add(audit);
+        if (admission.isAccepted()) {
+            System.out.println("➕ Whispered audit " + audit.getReqId() + ": " + admission);
+        }
 
+        boolean full = admission == Mempool.Admission.REJECTED || admission == Mempool.Admission.BACKPRESSURE;
+        boolean walFailed = admission == Mempool.Admission.WAL_FAILED;
         BlockChainProto.WhisperResponse response = BlockChainProto.WhisperResponse.newBuilder()
-                .setStatus("success")
+                .setStatus(full || walFailed ? "failure" : "success")
+                .setErrorMessage(full ? "Mempool is full" : walFailed ? "Failed to log audit to the mempool WAL" : "")
                 .build();
 
         responseObserver.onNext(response);
@@ -53,20 +80,26 @@ public class BlockChainServiceImpl extends BlockChainServiceGrpc.BlockChainServi
         boolean allValid = true;
         String errorMessage = "";
 
-        // ✅ Step 1: Verify all audit signatures
-        for (CommonProto.FileAudit audit : request.getAuditsList()) {
-            if (!SignatureVerifier.verify(audit)) {
-                allValid = false;
-                errorMessage = "One or more audit signatures failed verification";
-                break;
-            }
+        // ✅ Step 1: Verify all audit signatures in parallel (audits this node verified at submit or whisper are skipped)
+        if (!VerifiedAuditCache.verifyAll(request.getAuditsList())) {
+            allValid = false;
+            errorMessage = "One or more audit signatures failed verification";
         }
 
-        // ✅ Step 2: Verify previous block hash
+        // ✅ Step 2: Verify previous block hash against the pending chain tip
+        // (the committed tip, or the proposal for the previous block while the leader pipelines)
         if (allValid) {
-            String expectedPreviousHash = BlockStorage.getLastBlockHash();
+            String expectedPreviousHash = null;
+            try {
+                expectedPreviousHash = pendingProposals.expectedPreviousHash(request.getId(), Config.PIPELINE_PARENT_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
             System.out.println("Local Previous Block Hash: " + expectedPreviousHash);
-            if (!expectedPreviousHash.equals(request.getPreviousHash())) {
+            if (expectedPreviousHash == null) {
+                allValid = false;
+                errorMessage = "Block " + request.getId() + " does not extend the local chain or a pending proposal";
+            } else if (!expectedPreviousHash.equals(request.getPreviousHash())) {
                 allValid = false;
                 errorMessage = "Previous block hash does not match local chain";
             }
@@ -74,7 +107,7 @@ public class BlockChainServiceImpl extends BlockChainServiceGrpc.BlockChainServi
 
         // ✅ Step 3: Verify Merkle root
         if (allValid) {
-            String computedMerkleRoot = MerkleUtil.computeMerkleRoot(request.getAuditsList());
+            String computedMerkleRoot = MerkleEngine.rootHex(mempool.leafHashes(request.getAuditsList()));
             System.out.println("Local Computed Merkle Root: " + computedMerkleRoot);
             if (!computedMerkleRoot.equals(request.getMerkleRoot())) {
                 allValid = false;
@@ -97,6 +130,11 @@ public class BlockChainServiceImpl extends BlockChainServiceGrpc.BlockChainServi
             }
         }
 
+        // Remember the block so the proposal for the next one can link to it before this one commits
+        if (allValid) {
+            pendingProposals.accept(request);
+        }
+
         // ✅ Step 5: Respond with vote
         BlockVoteResponse response = BlockVoteResponse.newBuilder()
                 .setVote(allValid)
@@ -116,43 +154,129 @@ public class BlockChainServiceImpl extends BlockChainServiceGrpc.BlockChainServi
     public void commitBlock(Block request, StreamObserver<BlockChainProto.BlockCommitResponse> responseObserver) {
         System.out.println("📥 CommitBlock called for block_id: " + request.getId());
 
-        boolean saved = BlockStorage.saveBlock(request);
+        String error = commitLocally(request);
+        BlockChainProto.BlockCommitResponse response = BlockCommitResponse.newBuilder()
+                .setStatus(error == null ? "success" : "failure")
+                .setErrorMessage(error == null ? "" : error)
+                .build();
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
 
-        // Remove committed audits from the mempool if saved successfully
-        if (saved) {
+    @Override
+    public void commitBlockHeader(CommitBlockHeaderRequest request, StreamObserver<CommitBlockHeaderResponse> responseObserver) {
+        System.out.println("📥 CommitBlockHeader called for block_id: " + request.getId());
+        CommitBlockHeaderResponse.Builder response = CommitBlockHeaderResponse.newBuilder();
+
+        // Usually the proposal this node voted for; otherwise rebuild the block from the
+        // mempool plus whatever audits the leader sent along
+        Block block = pendingProposals.get(request.getId());
+        if (block == null || !block.getHash().equals(request.getHash())) {
+            Map<String, CommonProto.FileAudit> supplied = new HashMap<>();
             for (CommonProto.FileAudit audit : request.getAuditsList()) {
-                FileAuditServiceImpl.getMempool().removeAudit(audit.getReqId());
+                supplied.put(audit.getReqId(), audit);
             }
-            System.out.println("🧹 Removed committed audits from mempool.");
-        }
 
-        BlockChainProto.BlockCommitResponse response = BlockCommitResponse.newBuilder()
-                .setStatus(saved ? "success" : "failure")
-                .setErrorMessage(saved ? "" : "Failed to write block to disk")
-                .build();
+            List<CommonProto.FileAudit> audits = new ArrayList<>(request.getReqIdsCount());
+            List<String> missing = new ArrayList<>();
+            for (String reqId : request.getReqIdsList()) {
+                CommonProto.FileAudit audit = supplied.get(reqId);
+                if (audit == null) {
+                    audit = mempool.get(reqId);
+                }
+                if (audit == null) {
+                    missing.add(reqId);
+                } else {
+                    audits.add(audit);
+                }
+            }
 
-        responseObserver.onNext(response);
+            if (!missing.isEmpty()) {
+                System.out.println("🔍 Block " + request.getId() + ": " + missing.size() + " audit(s) not held locally, asking the leader.");
+                responseObserver.onNext(response.setStatus("missing").addAllMissingReqIds(missing).build());
+                responseObserver.onCompleted();
+                return;
+            }
+
+            // The rebuilt block must hash to exactly what the majority voted for
+            String computedHash = HashUtil.computeBlockHash((int) request.getId(), request.getPreviousHash(),
+                    audits, request.getMerkleRoot());
+            if (!MerkleEngine.rootHex(mempool.leafHashes(audits)).equals(request.getMerkleRoot()) || !computedHash.equals(request.getHash())) {
+                responseObserver.onNext(response.setStatus("failure")
+                        .setErrorMessage("Rebuilt block " + request.getId() + " does not match the committed hash")
+                        .build());
+                responseObserver.onCompleted();
+                return;
+            }
+
+            block = Block.newBuilder()
+                    .setId(request.getId())
+                    .setHash(request.getHash())
+                    .setPreviousHash(request.getPreviousHash())
+                    .addAllAudits(audits)
+                    .setMerkleRoot(request.getMerkleRoot())
+                    .build();
+        }
+
+        String error = commitLocally(block);
+        responseObserver.onNext(response.setStatus(error == null ? "success" : "failure")
+                .setErrorMessage(error == null ? "" : error)
+                .build());
         responseObserver.onCompleted();
     }
 
+    /** Saves a committed block and clears its audits from the mempool; returns an error message, or null. */
+    private String commitLocally(Block block) {
+        // Commits arrive in block order; after a gap (e.g. commits skipped while this node was
+        // unreachable) the missing blocks have to come from recovery first
+        long latestBlockId = BlockStorage.getLatestBlockId();
+        if (block.getId() > latestBlockId + 1) {
+            System.err.println("⚠️ Block " + block.getId() + " does not follow local tip " + latestBlockId + "; waiting for recovery.");
+            return "Block " + block.getId() + " does not follow local tip " + latestBlockId;
+        }
 
-    @Override
-    public void getBlock(BlockChainProto.GetBlockRequest request, StreamObserver<GetBlockResponse> responseObserver) {
+        if (!BlockStorage.saveBlock(block)) {
+            return "Failed to write block to disk";
+        }
+
+        // Remove committed audits from the mempool once saved
+        pendingProposals.committed(block.getId());
+        int removed = mempool.removeAll(ProposalPipeline.reqIdsOf(block));
+        System.out.println("🧹 Removed " + removed + " committed audit(s) from mempool.");
+        return null;
+    }
+
+
+    /**
+     * The service as registered with the gRPC server: the generated binding, except that
+     * GetBlock is served on {@link GetBlockPassthrough#METHOD}, which streams the stored
+     * block bytes instead of a Block message.
+     */
+    public ServerServiceDefinition serviceDefinition() {
+        ServerServiceDefinition.Builder service = ServerServiceDefinition.builder(BlockChainServiceGrpc.SERVICE_NAME);
+        for (ServerMethodDefinition<?, ?> method : bindService().getMethods()) {
+            if (!method.getMethodDescriptor().getFullMethodName().equals(GetBlockPassthrough.METHOD.getFullMethodName())) {
+                service.addMethod(method);
+            }
+        }
+        service.addMethod(GetBlockPassthrough.METHOD, ServerCalls.asyncUnaryCall(this::getBlockBytes));
+        return service.build();
+    }
+
+    private void getBlockBytes(BlockChainProto.GetBlockRequest request, StreamObserver<ByteString> responseObserver) {
         long blockId = request.getId();
         System.out.println("📤 GetBlock called for block_id: " + blockId);
 
-        BlockChainProto.GetBlockResponse.Builder responseBuilder = GetBlockResponse.newBuilder();
-
+        ByteString response;
         try {
-            Block block = BlockStorage.loadBlock(blockId);
-            responseBuilder.setBlock(block)
-                    .setStatus("success");
+            // The block's record as stored in the block log, passed through without parsing it
+            response = GetBlockPassthrough.success(BlockStorage.loadBlockBytes(blockId));
         } catch (Exception e) {
-            responseBuilder.setStatus("failure")
-                    .setErrorMessage("Block not found: " + e.getMessage());
+            response = GetBlockPassthrough.failure("Block not found: " + e.getMessage());
         }
 
-        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
@@ -244,97 +368,35 @@ public class BlockChainServiceImpl extends BlockChainServiceGrpc.BlockChainServi
 
 
 
-    public void proposeBlockAsLeader() {
-        try {
-            // Step 1: Get audits from mempool
-            List<CommonProto.FileAudit> allAudits = Mempool.getAll();
-            if (allAudits.isEmpty()) {
-                System.out.println("ℹ️ No audits in mempool. Skipping block proposal.");
-                return;
-            }
-
-             // ✅ Sort by timestamp and pick top 3
-            allAudits.sort(Comparator.comparingLong(CommonProto.FileAudit::getTimestamp));
-            List<CommonProto.FileAudit> mempoolAudits = allAudits.subList(0, Math.min(3, allAudits.size()));
-
-
-            // Step 2: Sort audits
-            mempoolAudits.sort(Comparator.comparingLong(CommonProto.FileAudit::getTimestamp));
-
-            // Step 3: Build block
-            int blockId = BlockStorage.getNextBlockId();
-            String previousHash = BlockStorage.getLastBlockHash();
-            String merkleRoot = MerkleUtil.computeMerkleRoot(mempoolAudits);
-            System.out.println("Local Computed Merkle Root: " + merkleRoot);
-            String hash = HashUtil.computeBlockHash(blockId, previousHash, mempoolAudits, merkleRoot);
-
-            BlockChainProto.Block block = BlockChainProto.Block.newBuilder()
-                    .setId(blockId)
-                    .setHash(hash)
-                    .setPreviousHash(previousHash)
-                    .addAllAudits(mempoolAudits)
-                    .setMerkleRoot(merkleRoot)
-                    .build();
-
-            // Step 4: Propose to all peers
-            int totalPeers = Config.PEER_ADDRESSES.size();
-            int positiveVotes = 0;
-
-            for (String peer : Config.PEER_ADDRESSES) {
-                try {
-                    ManagedChannel channel = ManagedChannelBuilder.forTarget(peer)
-                            .usePlaintext()
-                            .build();
-                    BlockChainServiceGrpc.BlockChainServiceBlockingStub stub = BlockChainServiceGrpc.newBlockingStub(channel);
-
-                    BlockChainProto.BlockVoteResponse vote = stub.proposeBlock(block);
-                    if (vote.getVote()) {
-                        positiveVotes++;
-                    }
-
-                    System.out.println("✅ Vote from " + peer + ": " + vote.getVote());
-                    channel.shutdown();
-                } catch (Exception e) {
-                    System.err.println("❌ Failed to propose to peer " + peer + ": " + e.getMessage());
-                }
-            }
-
-            // Step 5: Majority check and commit
-            int majority = (totalPeers / 2) + 1;
-            if (positiveVotes >= majority) {
-                System.out.println("🟢 Majority reached. Committing block to all peers and self...");
-
-                for (String peer : Config.PEER_ADDRESSES) {
-                    try {
-                        ManagedChannel channel = ManagedChannelBuilder.forTarget(peer)
-                                .usePlaintext()
-                                .build();
-                        BlockChainServiceGrpc.BlockChainServiceBlockingStub stub = BlockChainServiceGrpc.newBlockingStub(channel);
+    // Synchronized so the manual /propose-block endpoint and the scheduler cannot both pass the
+    // capacity check and overfill the pipeline
+    public synchronized void proposeBlockAsLeader() {
+        if (!pipeline.hasCapacity()) {
+            System.out.println("ℹ️ " + Config.CONSENSUS_PIPELINE_DEPTH + " block(s) already in flight. Skipping block proposal.");
+            return;
+        }
 
-                        BlockChainProto.BlockCommitResponse resp = stub.commitBlock(block);
-                        System.out.println("📦 Commit to " + peer + ": " + resp.getStatus());
+        // Take the oldest audits out of the mempool (already in timestamp order), as many as the
+        // block builder's current batch target and byte limit allow. The pipeline builds the block
+        // on its pending tip and puts the audits back if the block does not get committed.
+        List<CommonProto.FileAudit> mempoolAudits = blockBuilder.nextBatch(mempool);
+        if (mempoolAudits.isEmpty()) {
+            System.out.println("ℹ️ No audits in mempool. Skipping block proposal.");
+            return;
+        }
+        pipeline.submit(mempoolAudits);
+    }
 
-                        channel.shutdown();
-                    } catch (Exception e) {
-                        System.err.println("❌ Commit failed on peer " + peer + ": " + e.getMessage());
-                    }
-                }
+    public BlockBuilder getBlockBuilder() {
+        return blockBuilder;
+    }
 
-                // ✅ Commit locally and remove audits from local mempool
-                boolean saved = BlockStorage.saveBlock(block);
-                if (saved) {
-                    for (CommonProto.FileAudit audit : block.getAuditsList()) {
-                        FileAuditServiceImpl.getMempool().removeAudit(audit.getReqId());
-                    }
-                    System.out.println("🧹 Removed committed audits from local mempool.");
-                }
-            } else {
-                System.err.println("❌ Not enough votes. Block rejected. Votes: " + positiveVotes + "/" + totalPeers);
-            }
+    public ProposalPipeline getPipeline() {
+        return pipeline;
+    }
 
-        } catch (Exception e) {
-            System.err.println("❌ Failed to propose block: " + e.getMessage());
-        }
+    public PeerFanout getFanout() {
+        return fanout;
     }
 
 
@@ -345,16 +407,15 @@ public class BlockChainServiceImpl extends BlockChainServiceGrpc.BlockChainServi
             try {
                 // Check if this node is the current leader
                 if (selfAddress.equals(ElectionManager.getCurrentLeader())) {
-                    // Check if mempool has at least 2 audits
-                    if (FileAuditServiceImpl.getMempool().size() >= 3) {
-                        System.out.println("🧠 I am the leader and mempool size == 3. Proposing block...");
+                    // Cut a block once a full batch is pending or the oldest pending audit has lingered long enough
+                    if (pipeline.hasCapacity() && blockBuilder.shouldCut(mempool, System.currentTimeMillis())) {
                         this.proposeBlockAsLeader();
                     }
                 }
             } catch (Exception e) {
                 System.err.println("❌ Error in auto-proposal scheduler: " + e.getMessage());
             }
-        }, 5, 5, TimeUnit.SECONDS); // Delay 5 sec, run every 5 sec
+        }, 5000, Config.BLOCK_BUILDER_TICK_MS, TimeUnit.MILLISECONDS); // Delay 5 sec, then check every tick
     }
 
 
@@ -4,6 +4,7 @@ import com.codecatalyst.auditchain.config.Config;
 import com.codecatalyst.auditchain.proto.common.CommonProto;
 import com.codecatalyst.auditchain.proto.fileaudit.FileAuditProto;
 import com.codecatalyst.auditchain.proto.fileaudit.FileAuditServiceGrpc;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 
 import java.security.MessageDigest;
@@ -12,12 +13,12 @@ import java.util.List;
 
 public class FileAuditServiceImpl extends FileAuditServiceGrpc.FileAuditServiceImplBase {
 
-    private final Mempool mempool = new Mempool();
+    private final Mempool mempool = Mempool.getInstance();
 
     private final WhisperClient whisperClient = new WhisperClient(Config.PEER_ADDRESSES);
 
     public static Mempool getMempool() {
-        return new FileAuditServiceImpl().mempool;
+        return Mempool.getInstance();
     }
 
     private String generateBlockchainTxHash(CommonProto.FileAudit audit) {
@@ -65,25 +66,63 @@ public class FileAuditServiceImpl extends FileAuditServiceGrpc.FileAuditServiceI
         System.out.println("Public Key: " + request.getPublicKey());
         System.out.println("Signature: " + request.getSignature() + "\n");
 
-        boolean isValid = SignatureVerifier.verify(request);
+        boolean isValid = VerifiedAuditCache.verify(request);
 
         FileAuditProto.FileAuditResponse.Builder response = FileAuditProto.FileAuditResponse.newBuilder()
                 .setReqId(request.getReqId());
 
         if (isValid) {
-            mempool.add(request);
-            response.setStatus("success");
-            
-            // Generate and set blockchain transaction hash
-            String txHash = generateBlockchainTxHash(request);
-            response.setBlockchainTxHash(txHash);
-            System.out.println("Generated blockchain tx hash: " + txHash);
-
-            // Print mempool contents
-            mempool.printMempool();
-
-            // ✅ Broadcast to other full nodes
-            whisperClient.broadcastAudit(request);
+            Mempool.Admission admission = mempool.add(request);
+            System.out.println("🧾 Mempool admission for " + request.getReqId() + ": " + admission
+                    + " (in memory " + mempool.size() + "/" + mempool.getCapacity() + ", pending " + mempool.pendingCount() + ")");
+
+            if (admission == Mempool.Admission.BACKPRESSURE) {
+                // Retryable: the client should back off and submit the same audit again
+                responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Mempool is full, retry later")
+                        .asRuntimeException());
+                return;
+            }
+
+            if (admission == Mempool.Admission.WAL_FAILED) {
+                // Retryable too: the audit was not made durable, so it was not kept
+                responseObserver.onError(Status.UNAVAILABLE
+                        .withDescription("Failed to log audit to the mempool WAL, retry later")
+                        .asRuntimeException());
+                return;
+            }
+
+            if (admission == Mempool.Admission.REJECTED) {
+                response.setStatus("failure")
+                        .setErrorMessage("Mempool is full.");
+            } else if (admission == Mempool.Admission.COMMITTED) {
+                // A retry of an audit that is already on chain: acknowledge it, but never propose it again
+                response.setStatus("success")
+                        .setBlockchainTxHash(generateBlockchainTxHash(request))
+                        .setErrorMessage("Audit already committed");
+
+                // Include the block header and Merkle path proving where it was committed
+                try {
+                    FileAuditProto.BlockHeader header = AuditProofs.headerFor(request.getReqId());
+                    if (header != null) {
+                        response.setBlockHeader(header);
+                    }
+                } catch (Exception e) {
+                    System.err.println("⚠️ Failed to build inclusion proof for " + request.getReqId() + ": " + e.getMessage());
+                }
+            } else {
+                response.setStatus("success");
+
+                // Generate and set blockchain transaction hash
+                String txHash = generateBlockchainTxHash(request);
+                response.setBlockchainTxHash(txHash);
+                System.out.println("Generated blockchain tx hash: " + txHash);
+
+                // ✅ Broadcast to other full nodes (peers already have resubmitted duplicates)
+                if (admission.isAccepted()) {
+                    whisperClient.broadcastAudit(request);
+                }
+            }
         } else {
             response.setStatus("failure")
                     .setErrorMessage("Invalid signature.");
@@ -92,4 +131,28 @@ public class FileAuditServiceImpl extends FileAuditServiceGrpc.FileAuditServiceI
         responseObserver.onNext(response.build());
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void getAuditProof(FileAuditProto.AuditProofRequest request,
+                              StreamObserver<FileAuditProto.AuditProofResponse> responseObserver) {
+        FileAuditProto.AuditProofResponse.Builder response = FileAuditProto.AuditProofResponse.newBuilder()
+                .setReqId(request.getReqId());
+        try {
+            FileAuditProto.BlockHeader header = AuditProofs.headerFor(request.getReqId());
+            if (header == null) {
+                response.setStatus("not_found")
+                        .setErrorMessage("Audit not committed");
+            } else {
+                response.setStatus("success")
+                        .setBlockHeader(header);
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to build inclusion proof for " + request.getReqId() + ": " + e.getMessage());
+            response.setStatus("failure")
+                    .setErrorMessage(e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
 }
@@ -0,0 +1,80 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.GetBlockRequest;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.GetBlockResponse;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainServiceGrpc;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * GetBlock with its response passed through as encoded bytes. The stored block record
+ * (a view of the memory-mapped block log for sealed segments) is framed as field 1 of a
+ * GetBlockResponse and written out as is, so the block is never parsed into a Block and
+ * serialized again. On the wire this is the same GetBlockResponse clients already decode.
+ */
+final class GetBlockPassthrough {
+
+    /** The GetBlock method, with a response marshaller that streams the given bytes. */
+    static final MethodDescriptor<GetBlockRequest, ByteString> METHOD = BlockChainServiceGrpc.getGetBlockMethod()
+            .toBuilder(BlockChainServiceGrpc.getGetBlockMethod().getRequestMarshaller(), new BytesMarshaller())
+            .build();
+
+    private static final ByteString SUCCESS = GetBlockResponse.newBuilder()
+            .setStatus("success")
+            .build()
+            .toByteString();
+
+    private GetBlockPassthrough() {
+    }
+
+    /** A successful GetBlockResponse around the protobuf-encoded block, without copying it. */
+    static ByteString success(ByteString block) throws IOException {
+        byte[] header = new byte[CodedOutputStream.computeTagSize(GetBlockResponse.BLOCK_FIELD_NUMBER)
+                + CodedOutputStream.computeUInt32SizeNoTag(block.size())];
+        CodedOutputStream out = CodedOutputStream.newInstance(header);
+        out.writeTag(GetBlockResponse.BLOCK_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(block.size());
+        out.checkNoSpaceLeft();
+        // Concatenated messages decode as one, so the status field can follow the block
+        return ByteString.copyFrom(header).concat(block).concat(SUCCESS);
+    }
+
+    static ByteString failure(String errorMessage) {
+        return GetBlockResponse.newBuilder()
+                .setStatus("failure")
+                .setErrorMessage(errorMessage)
+                .build()
+                .toByteString();
+    }
+
+    private static final class BytesMarshaller implements MethodDescriptor.Marshaller<ByteString> {
+        @Override
+        public InputStream stream(ByteString value) {
+            return new BytesInput(value);
+        }
+
+        @Override
+        public ByteString parse(InputStream stream) {
+            try {
+                return ByteString.readFrom(stream);
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to read GetBlock response").withCause(e).asRuntimeException();
+            }
+        }
+    }
+
+    // Lets gRPC frame the message from its size instead of buffering it first
+    private static final class BytesInput extends FilterInputStream implements KnownLength {
+        BytesInput(ByteString bytes) {
+            super(bytes.newInput());
+        }
+    }
+}
@@ -13,7 +13,7 @@ public class  HeartbeatClient {
 
     public static void broadcastHeartbeat() {
         int latestBlockId = (int) BlockStorage.getLatestBlockId();
-        int mempoolSize = FileAuditServiceImpl.getMempool().size();
+        int mempoolSize = FileAuditServiceImpl.getMempool().pendingCount();  // includes audits spilled to disk
 
         System.out.println("🔁 Starting heartbeat broadcast...");
         System.out.println("🧠 Self NODE_ID: " + Config.NODE_ID);
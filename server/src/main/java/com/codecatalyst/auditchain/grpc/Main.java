@@ -2,21 +2,34 @@ package com.codecatalyst.auditchain.grpc;
 
 import com.codecatalyst.auditchain.config.Config;
 import com.codecatalyst.auditchain.grpc.HeartbeatClient;
+import com.codecatalyst.auditchain.proto.fileaudit.FileAuditProto;
+import com.google.gson.Gson;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import com.codecatalyst.auditchain.leader.ElectionManager;
 import com.codecatalyst.auditchain.recovery.NodeRecoveryManager;
+import com.codecatalyst.auditchain.storage.BlockStorage;
+import com.codecatalyst.auditchain.storage.DurabilityMode;
+import com.codecatalyst.auditchain.storage.IndexedAudit;
+import com.codecatalyst.auditchain.verify.ChainVerifier;
+import com.google.protobuf.util.JsonFormat;
 
 import static spark.Spark.*;
 
 public class Main {
+    private static final int DEFAULT_QUERY_LIMIT = 100;
+
     public static void main(String[] args) throws Exception {
         int port = args.length > 0 ? Integer.parseInt(args[0]) : 50052;
 
+        // Open block storage up front: loads the latest checkpoint and replays the blocks after it
+        System.out.println("📦 Chain tip at startup: " + BlockStorage.getChainTip());
+
         // Instantiate service implementations
         BlockChainServiceImpl blockChainService = new BlockChainServiceImpl();
         FileAuditServiceImpl auditService = new FileAuditServiceImpl();
@@ -25,7 +38,7 @@ public class Main {
         Server server = ServerBuilder
                 .forPort(port)
                 .addService(auditService)
-                .addService(blockChainService)
+                .addService(blockChainService.serviceDefinition())  // GetBlock streams stored block bytes
                 .build();
 
         server.start();
@@ -35,6 +48,24 @@ public class Main {
         // Start Spark HTTP server on 9090
         port(9090);
 
+        // Endpoint to inspect the leader's adaptive block builder
+        get("/leader/block-builder", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(blockChainService.getBlockBuilder().stats());
+        });
+
+        // Endpoint to inspect the leader's consensus pipeline (blocks in flight, aborts, pending tip)
+        get("/leader/pipeline", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(blockChainService.getPipeline().stats());
+        });
+
+        // Endpoint to inspect the leader's vote/commit fan-out (deadlines, late votes, per-peer commit backlog)
+        get("/leader/fanout", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(blockChainService.getFanout().stats());
+        });
+
         // Endpoint to manually trigger block proposal
         post("/propose-block", (req, res) -> {
             try {
@@ -57,6 +88,100 @@ public class Main {
             }
         });
 
+        // Endpoint to return the mempool's precomputed Merkle leaf hash counters
+        get("/mempool/leaf-hashes", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(FileAuditServiceImpl.getMempool().leafHashStats());
+        });
+
+        // Endpoint to return block cache counters
+        get("/storage/cache", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(BlockStorage.getBlockCache().stats());
+        });
+
+        // Endpoint to return parsed public-key cache counters
+        get("/signatures/key-cache", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(SignatureVerifier.publicKeyCacheStats());
+        });
+
+        // Endpoint to return verified-audit cache counters
+        get("/signatures/verified", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(VerifiedAuditCache.stats());
+        });
+
+        // Endpoint to inspect the committed req_id dedupe filter
+        get("/storage/committed", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(BlockStorage.getCommittedRequests().stats());
+        });
+
+        // Endpoints to inspect and switch block durability (NONE, FSYNC_PER_BLOCK, GROUP_COMMIT)
+        get("/storage/durability", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(BlockStorage.getBlockLog().durabilityStats());
+        });
+
+        post("/storage/durability/:mode", (req, res) -> {
+            try {
+                DurabilityMode mode = DurabilityMode.valueOf(req.params(":mode").toUpperCase());
+                BlockStorage.getBlockLog().setDurabilityMode(mode);
+                return "✅ Durability set to " + mode;
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return "❌ Unknown durability mode: " + req.params(":mode");
+            }
+        });
+
+        // Endpoints to look up committed audits through the secondary indexes
+        get("/audits/req/:reqId", (req, res) -> {
+            res.type("application/json");
+            IndexedAudit audit = BlockStorage.findAuditByReqId(req.params(":reqId"));
+            if (audit == null) {
+                res.status(404);
+                return "{}";
+            }
+            return indexedAuditsToJson(List.of(audit));
+        });
+
+        get("/audits/file/:fileId", (req, res) -> {
+            res.type("application/json");
+            return indexedAuditsToJson(BlockStorage.findAuditsByFileId(req.params(":fileId"), queryLimit(req)));
+        });
+
+        get("/audits/user/:userId", (req, res) -> {
+            res.type("application/json");
+            return indexedAuditsToJson(BlockStorage.findAuditsByUserId(req.params(":userId"), queryLimit(req)));
+        });
+
+        get("/audits/req/:reqId/proof", (req, res) -> {
+            res.type("application/json");
+            FileAuditProto.BlockHeader header = AuditProofs.headerFor(req.params(":reqId"));
+            if (header == null) {
+                res.status(404);
+                return "{}";
+            }
+            return JsonFormat.printer().print(header);
+        });
+
+        get("/audits/proofs/cache", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(AuditProofs.stats());
+        });
+
+        // Endpoints to report and trigger background chain verification
+        get("/verifier/status", (req, res) -> {
+            res.type("application/json");
+            return new Gson().toJson(ChainVerifier.status());
+        });
+
+        post("/verifier/run", (req, res) -> {
+            new Thread(ChainVerifier::runOnce, "chain-verifier-manual").start();
+            return "✅ Chain verification triggered";
+        });
+
         // Schedule heartbeat every 5 seconds
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
         scheduler.scheduleAtFixedRate(() -> {
@@ -75,6 +200,8 @@ public class Main {
          ElectionManager.startElectionMonitor(Config.NODE_ID);
          // Start node recovery monitor (runs every 30 seconds)
          NodeRecoveryManager.startRecoveryMonitor();
+         // Start background chain verifier (re-checks newly committed blocks every few minutes)
+         ChainVerifier.startVerifierMonitor();
 
 
 
@@ -88,8 +215,45 @@ public class Main {
             System.out.println("\n🛑 Shutting down server...");
             FileAuditServiceImpl.getMempool().printMempool();
             server.shutdown();
+            blockChainService.getFanout().shutdown();
+            BlockStorage.close();
         }));
 
         server.awaitTermination();
     }
+
+    // Answers 400 (through halt) unless ?limit= is absent or a positive integer
+    private static int queryLimit(spark.Request req) {
+        String limit = req.queryParams("limit");
+        if (limit == null) {
+            return DEFAULT_QUERY_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit.trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Answered below
+        }
+        throw halt(400, "❌ limit must be a positive integer: " + limit);
+    }
+
+    private static String indexedAuditsToJson(List<IndexedAudit> audits) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < audits.size(); i++) {
+            IndexedAudit audit = audits.get(i);
+            sb.append("{\"block_id\":").append(audit.getBlockId())
+                    .append(",\"position\":").append(audit.getPosition())
+                    .append(",\"audit\":");
+            try {
+                sb.append(JsonFormat.printer().print(audit.getAudit()));
+            } catch (Exception e) {
+                sb.append("\"error\"");
+            }
+            sb.append("}");
+            if (i < audits.size() - 1) sb.append(",");
+        }
+        return sb.append("]").toString();
+    }
 }
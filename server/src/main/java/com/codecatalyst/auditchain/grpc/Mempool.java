@@ -1,72 +1,408 @@
 package com.codecatalyst.auditchain.grpc;
 
+import com.codecatalyst.auditchain.config.Config;
 import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.storage.BlockStorage;
 import com.google.protobuf.util.JsonFormat;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Pending audits waiting to be proposed in a block. There is one mempool per node,
+ * obtained through {@link #getInstance()}.
+ *
+ * Audits are indexed by req_id in a ConcurrentHashMap (O(1) dedupe and lookup) and
+ * kept in a skip-list set ordered by (timestamp, req_id), so concurrent submitAudit
+ * and whisper calls never serialize on a shared lock, removal is O(log n) and the
+ * oldest audits can be drained without copying or sorting the pool. size() reads a
+ * counter and does not contend with writers.
+ *
+ * The req_id map is authoritative. A racing remove can leave a stale entry in the
+ * ordered set; drains and snapshots skip entries the map no longer points at.
+ *
+ * At most Config.MEMPOOL_CAPACITY audits are held in memory. Beyond that, new
+ * audits are rejected, refused with a retryable result, or spilled to an on-disk
+ * queue, depending on Config.MEMPOOL_OVERFLOW_POLICY. Spilled audits are paged back
+ * in whenever drains or commits free space.
+ *
+ * Each audit's Merkle leaf hash is computed on admission and kept until the audit is
+ * committed, so proposing and voting only hash a block's internal Merkle nodes.
+ *
+ * Accepted audits and commit removals are recorded in a {@link MempoolWal} (when
+ * Config.MEMPOOL_WAL_ENABLED), which is replayed on startup.
+ */
 public class Mempool {
-    private static final List<CommonProto.FileAudit> audits = new ArrayList<>();
+    private static final Comparator<CommonProto.FileAudit> BY_AGE =
+            Comparator.comparingLong(CommonProto.FileAudit::getTimestamp)
+                    .thenComparing(CommonProto.FileAudit::getReqId);
 
-    public synchronized void add(CommonProto.FileAudit audit) {
-        audits.add(audit);
-        System.out.println("➕ Added audit to mempool: " + audit.getReqId());
+    private static final String MEMPOOL_DIR = "data/mempool";
+
+    private static final Mempool INSTANCE = open(Path.of(MEMPOOL_DIR), Config.MEMPOOL_CAPACITY,
+            Config.MEMPOOL_OVERFLOW_POLICY, Config.MEMPOOL_WAL_ENABLED);
+
+    /** Outcome of offering an audit to the mempool. */
+    public enum Admission {
+        ADDED,
+        SPILLED,
+        DUPLICATE,
+        COMMITTED,
+        REJECTED,
+        BACKPRESSURE,
+        // The WAL write failed, so the audit was dropped again; the client may retry
+        WAL_FAILED;
+
+        public boolean isAccepted() {
+            return this == ADDED || this == SPILLED;
+        }
     }
 
-    public static synchronized List<CommonProto.FileAudit> getAll() {
-        return new ArrayList<>(audits);
+    private final int capacity;
+    private final MempoolOverflowPolicy policy;
+    private final ConcurrentHashMap<String, CommonProto.FileAudit> byReqId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<CommonProto.FileAudit> byAge = new ConcurrentSkipListSet<>(BY_AGE);
+    private final AtomicInteger size = new AtomicInteger();
+    private final MempoolSpillQueue spillQueue;
+    private final Set<String> spilledIds = ConcurrentHashMap.newKeySet();
+    // Drained by the proposer but not yet committed; still pending as far as the WAL is concerned
+    private final ConcurrentHashMap<String, CommonProto.FileAudit> inFlight = new ConcurrentHashMap<>();
+    private MempoolWal wal;
+    private final MempoolLeafHashes leafHashes = new MempoolLeafHashes();
+    // When each pending audit (in memory, spilled or in flight) was first admitted, in epoch millis
+    private final ConcurrentHashMap<String, Long> admittedAt = new ConcurrentHashMap<>();
+
+    private Mempool(int capacity, MempoolOverflowPolicy policy, MempoolSpillQueue spillQueue) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.spillQueue = spillQueue;
     }
 
-    public synchronized void clear() {
-        audits.clear();
-        System.out.println("🧹 Mempool cleared");
+    /**
+     * Opens a mempool whose spill queue and WAL live in the given directory. With the
+     * WAL enabled, audits that were pending when the node stopped are replayed, except
+     * those that have been committed on chain since.
+     */
+    public static Mempool open(Path dir, int capacity, MempoolOverflowPolicy policy, boolean walEnabled) {
+        try {
+            MempoolSpillQueue spillQueue = policy == MempoolOverflowPolicy.SPILL
+                    ? new MempoolSpillQueue(dir.resolve("spill.queue")) : null;
+            Mempool mempool = new Mempool(capacity, policy, spillQueue);
+            if (spillQueue != null) {
+                for (String reqId : spillQueue.pendingReqIds()) {
+                    if (!BlockStorage.isCommitted(reqId)) {
+                        mempool.spilledIds.add(reqId);
+                    }
+                }
+            }
+            if (walEnabled) {
+                mempool.replayWal(new MempoolWal(dir.resolve("mempool.wal"), Config.MEMPOOL_WAL_FSYNC));
+            }
+            // After the WAL is open, so audits paged in at startup are logged before the queue forgets them
+            mempool.pageIn();
+            return mempool;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open mempool at " + dir, e);
+        }
+    }
+
+    private void replayWal(MempoolWal log) throws IOException {
+        long start = System.nanoTime();
+        int replayed = 0;
+        int committed = 0;
+        for (CommonProto.FileAudit audit : log.replay()) {
+            if (BlockStorage.isCommitted(audit.getReqId())) {
+                committed++;
+            } else if (admit(audit).isAccepted()) {
+                replayed++;
+            }
+        }
+        log.rewrite(liveAudits());
+        log.start(() -> size.get() + inFlight.size(), this::liveAudits);
+        wal = log;
+        System.out.println("📝 Replayed " + replayed + " pending audit(s) from the mempool WAL in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms, skipped " + committed + " already committed");
+    }
+
+    // What a WAL compaction has to keep; spilled audits are kept by the spill queue itself
+    private List<CommonProto.FileAudit> liveAudits() {
+        List<CommonProto.FileAudit> audits = getAll();
+        audits.addAll(inFlight.values());
+        return audits;
+    }
+
+    public static Mempool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Offers an audit to the mempool, applying the overflow policy when it is full.
+     * With the WAL enabled, an accepted audit is logged before this returns; if that
+     * write fails the audit is dropped again and {@link Admission#WAL_FAILED} returned,
+     * so it is never acknowledged without being durable.
+     */
+    public Admission add(CommonProto.FileAudit audit) {
+        Admission admission = admit(audit);
+        if (wal != null && admission.isAccepted()) {
+            try {
+                wal.awaitWritten(wal.logAdd(audit));
+            } catch (IOException e) {
+                System.err.println("❌ Failed to log audit " + audit.getReqId() + " to the mempool WAL: " + e.getMessage());
+                discard(audit.getReqId());
+                return Admission.WAL_FAILED;
+            }
+        }
+        return admission;
+    }
+
+    private Admission admit(CommonProto.FileAudit audit) {
+        String reqId = audit.getReqId();
+        // An audit drained into a proposal is still pending until its block commits
+        if (contains(reqId)) {
+            return Admission.DUPLICATE;
+        }
+        if (BlockStorage.isCommitted(reqId)) {
+            return Admission.COMMITTED;
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return overflow(audit);
+        }
+        if (byReqId.putIfAbsent(reqId, audit) != null) {
+            size.decrementAndGet();
+            return Admission.DUPLICATE;
+        }
+        admittedAt.putIfAbsent(reqId, System.currentTimeMillis());
+        byAge.add(audit);
+        leafHashes.add(audit);
+        return Admission.ADDED;
+    }
+
+    private Admission overflow(CommonProto.FileAudit audit) {
+        switch (policy) {
+            case BACKPRESSURE:
+                return Admission.BACKPRESSURE;
+            case SPILL:
+                if (!spilledIds.add(audit.getReqId())) {
+                    return Admission.DUPLICATE;
+                }
+                try {
+                    spillQueue.append(audit);
+                    admittedAt.putIfAbsent(audit.getReqId(), System.currentTimeMillis());
+                    return Admission.SPILLED;
+                } catch (IOException e) {
+                    spilledIds.remove(audit.getReqId());
+                    System.err.println("❌ Failed to spill audit " + audit.getReqId() + ": " + e.getMessage());
+                    return Admission.REJECTED;
+                }
+            default:
+                return Admission.REJECTED;
+        }
+    }
+
+    // Adds an audit regardless of capacity (audits coming back from a failed proposal or the spill queue);
+    // they keep the admission time they first got
+    private void insert(CommonProto.FileAudit audit) {
+        if (byReqId.putIfAbsent(audit.getReqId(), audit) == null) {
+            admittedAt.putIfAbsent(audit.getReqId(), System.currentTimeMillis());
+            byAge.add(audit);
+            size.incrementAndGet();
+            leafHashes.add(audit);
+        }
+    }
+
+    /** Puts back audits that were drained for a block that did not get committed. */
+    public void restore(Collection<CommonProto.FileAudit> audits) {
+        for (CommonProto.FileAudit audit : audits) {
+            inFlight.remove(audit.getReqId());
+            insert(audit);
+        }
     }
 
-    public synchronized void removeAudit(String reqId) {
-        // Debug: Log the size of the mempool before attempting removal
-        System.out.println("🔍 Attempting to remove audit. Current mempool size: " + audits.size());
+    /** Moves spilled audits back into memory while there is room. */
+    private void pageIn() {
+        if (spillQueue == null || spillQueue.size() == 0) {
+            return;
+        }
+        // One page-in at a time, so an acknowledge never covers another caller's unlogged audits
+        synchronized (spillQueue) {
+            try {
+                int free = capacity - size.get();
+                if (free <= 0) {
+                    return;
+                }
+                int pagedIn = 0;
+                long lastSeq = 0;
+                for (CommonProto.FileAudit audit : spillQueue.poll(free)) {
+                    // Spilled audits removed or committed in the meantime are dropped here
+                    if (spilledIds.remove(audit.getReqId()) && !BlockStorage.isCommitted(audit.getReqId())) {
+                        insert(audit);
+                        pagedIn++;
+                        if (wal != null) {
+                            lastSeq = wal.logAdd(audit);
+                        }
+                    }
+                }
+                // The spill queue forgets them once acknowledged, so the WAL must have them first
+                if (lastSeq > 0) {
+                    wal.awaitWritten(lastSeq);
+                }
+                spillQueue.acknowledge();
+                System.out.println("💾 Paged " + pagedIn + " spilled audit(s) back into the mempool");
+            } catch (IOException e) {
+                System.err.println("❌ Failed to page in spilled audits: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Returns a snapshot of the pending audits, oldest first. */
+    public List<CommonProto.FileAudit> getAll() {
+        List<CommonProto.FileAudit> audits = new ArrayList<>(size.get());
+        for (CommonProto.FileAudit audit : byAge) {
+            if (isCurrent(audit)) {
+                audits.add(audit);
+            }
+        }
+        return audits;
+    }
 
-        // Debug: Log the request ID being searched for
-        System.out.println("🔍 Searching for audit with reqId: " + reqId);
+    /**
+     * When the audit that the next drain takes first was admitted (epoch millis), or 0
+     * when no audit is held in memory. Audits that came back from a failed proposal or
+     * the spill queue count from their first admission.
+     */
+    public long oldestAdmittedAt() {
+        for (CommonProto.FileAudit audit : byAge) {
+            if (isCurrent(audit)) {
+                Long at = admittedAt.get(audit.getReqId());
+                if (at != null) {
+                    return at;
+                }
+            }
+        }
+        return 0;
+    }
 
-        // Create an iterator to traverse the list of audits
-        Iterator<CommonProto.FileAudit> it = audits.iterator();
+    /** Removes and returns up to k of the oldest pending audits, oldest first. */
+    public List<CommonProto.FileAudit> drainOldest(int k) {
+        return drainOldest(k, Long.MAX_VALUE);
+    }
 
-        // Iterate through the mempool to find the audit with the matching reqId
-        while (it.hasNext()) {
-            CommonProto.FileAudit audit = it.next();
+    /**
+     * Removes and returns up to k of the oldest pending audits, oldest first, stopping
+     * before their encoded size would exceed maxBytes (at least one audit is returned).
+     */
+    public List<CommonProto.FileAudit> drainOldest(int k, long maxBytes) {
+        List<CommonProto.FileAudit> drained = new ArrayList<>(Math.max(0, Math.min(k, size.get())));
+        long bytes = 0;
+        while (drained.size() < k) {
+            CommonProto.FileAudit audit = byAge.pollFirst();
+            if (audit == null) {
+                break;
+            }
+            if (!drained.isEmpty() && bytes + audit.getSerializedSize() > maxBytes) {
+                byAge.add(audit);
+                break;
+            }
+            // Claim the audit through the map so that a concurrent remove cannot also count it
+            CommonProto.FileAudit pending = byReqId.get(audit.getReqId());
+            if (pending != null && BY_AGE.compare(pending, audit) == 0 && byReqId.remove(audit.getReqId(), pending)) {
+                bytes += pending.getSerializedSize();
+                size.decrementAndGet();
+                inFlight.put(pending.getReqId(), pending);
+                drained.add(pending);
+            }
+        }
+        pageIn();
+        return drained;
+    }
 
-            // Debug: Log the current audit being checked
-            System.out.println("🔍 Checking audit with reqId: " + audit.getReqId());
+    public void clear() {
+        byReqId.clear();
+        byAge.clear();
+        spilledIds.clear();
+        inFlight.clear();
+        leafHashes.clear();
+        admittedAt.clear();
+        size.set(0);
+        System.out.println("🧹 Mempool cleared");
+    }
 
-            // Check if the current audit's reqId matches the one to be removed
-            if (audit.getReqId().equals(reqId)) {
-                // If a match is found, remove the audit from the mempool
-                it.remove();
+    /** Removes a committed audit, whether it is in memory, spilled or drained into a proposal. */
+    public boolean removeAudit(String reqId) {
+        boolean removed = discard(reqId);
+        if (removed && wal != null) {
+            wal.logRemove(reqId);
+        }
+        return removed;
+    }
 
-                // Debug: Log successful removal
-                System.out.println("🗑️ Successfully removed audit from mempool: " + reqId);
+    // Drops a pending audit wherever it is, without logging the removal
+    private boolean discard(String reqId) {
+        boolean removed;
+        CommonProto.FileAudit audit = byReqId.remove(reqId);
+        if (audit != null) {
+            size.decrementAndGet();
+            byAge.remove(audit);
+            removed = true;
+        } else {
+            removed = spilledIds.remove(reqId) | inFlight.remove(reqId) != null;
+        }
+        leafHashes.remove(reqId);
+        admittedAt.remove(reqId);
+        return removed;
+    }
 
-                // Debug: Log the size of the mempool after removal
-                System.out.println("🔍 Mempool size after removal: " + audits.size());
-                return;
+    /** Removes every committed audit with one of the given req_ids and returns how many were pending. */
+    public int removeAll(Collection<String> reqIds) {
+        int removed = 0;
+        for (String reqId : reqIds) {
+            if (removeAudit(reqId)) {
+                removed++;
             }
         }
+        pageIn();
+        return removed;
+    }
 
-        // If no matching audit is found, log a warning
-        System.out.println("⚠️ Audit not found in mempool: " + reqId);
+    /**
+     * Merkle leaf hashes for a block's audits. Hashes computed when the audits were
+     * admitted are reused; only audits this mempool never held are hashed here.
+     */
+    public byte[][] leafHashes(List<CommonProto.FileAudit> audits) {
+        return leafHashes.hashes(audits);
+    }
+
+    public Map<String, Object> leafHashStats() {
+        return leafHashes.stats();
+    }
+
+    /** The pending audit with this req_id, or null if it is not held in memory (absent or spilled). */
+    public CommonProto.FileAudit get(String reqId) {
+        CommonProto.FileAudit audit = byReqId.get(reqId);
+        return audit != null ? audit : inFlight.get(reqId);
+    }
 
-        // Debug: Log the size of the mempool after the search
-        System.out.println("🔍 Mempool size after search: " + audits.size());
+    public boolean contains(String reqId) {
+        return byReqId.containsKey(reqId) || inFlight.containsKey(reqId) || spilledIds.contains(reqId);
     }
 
-    public synchronized boolean contains(String reqId) {
-        return audits.stream().anyMatch(a -> a.getReqId().equals(reqId));
+    private boolean isCurrent(CommonProto.FileAudit audit) {
+        CommonProto.FileAudit pending = byReqId.get(audit.getReqId());
+        return pending != null && BY_AGE.compare(pending, audit) == 0;
     }
 
-    public synchronized void printMempool() {
+    public void printMempool() {
+        List<CommonProto.FileAudit> audits = getAll();
         System.out.println("\n=== Mempool Contents ===");
         System.out.println("Total audits in mempool: " + audits.size());
         System.out.println("------------------------");
@@ -84,7 +420,8 @@ public class Mempool {
         System.out.println("=== End of Mempool ===\n");
     }
 
-    public synchronized String toJson() {
+    public String toJson() {
+        List<CommonProto.FileAudit> audits = getAll();
         StringBuilder sb = new StringBuilder();
         sb.append("[");
         for (int i = 0; i < audits.size(); i++) {
@@ -100,7 +437,17 @@ public class Mempool {
         return sb.toString();
     }
 
-    public synchronized int size() {
-        return audits.size();
+    /** Audits held in memory. */
+    public int size() {
+        return size.get();
+    }
+
+    /** Every pending audit, including those spilled to disk; this is what heartbeats report. */
+    public int pendingCount() {
+        return size.get() + spilledIds.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
     }
 }
@@ -0,0 +1,88 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.util.MerkleEngine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Merkle leaf hashes of the mempool's audits, computed once when an audit is admitted,
+ * so building or checking a block's Merkle root only hashes the internal nodes.
+ *
+ * A cached hash is used only for the very audit it was computed from (the same
+ * instance, or an equal message, e.g. the follower's copy of a proposed audit); an
+ * audit that merely shares a req_id is hashed from scratch.
+ */
+final class MempoolLeafHashes {
+
+    private static final class Leaf {
+        final CommonProto.FileAudit audit;
+        final byte[] hash;
+
+        Leaf(CommonProto.FileAudit audit) {
+            this.audit = audit;
+            this.hash = MerkleEngine.leafHash(audit);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Leaf> leaves = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    void add(CommonProto.FileAudit audit) {
+        leaves.computeIfAbsent(audit.getReqId(), reqId -> new Leaf(audit));
+    }
+
+    void remove(String reqId) {
+        leaves.remove(reqId);
+    }
+
+    void clear() {
+        leaves.clear();
+    }
+
+    /**
+     * The leaf hashes of the given audits in order. Only those not cached are hashed, in
+     * one {@link MerkleEngine#leafHashes} batch so large uncached blocks still hash in parallel.
+     */
+    byte[][] hashes(List<CommonProto.FileAudit> audits) {
+        byte[][] hashes = new byte[audits.size()][];
+        List<CommonProto.FileAudit> missed = new ArrayList<>();
+        List<Integer> missedAt = new ArrayList<>();
+        for (int i = 0; i < hashes.length; i++) {
+            CommonProto.FileAudit audit = audits.get(i);
+            Leaf leaf = leaves.get(audit.getReqId());
+            if (leaf != null && (leaf.audit == audit || leaf.audit.equals(audit))) {
+                hashes[i] = leaf.hash;
+            } else {
+                missed.add(audit);
+                missedAt.add(i);
+            }
+        }
+        if (!missed.isEmpty()) {
+            byte[][] computed = MerkleEngine.leafHashes(missed);
+            for (int j = 0; j < computed.length; j++) {
+                hashes[missedAt.get(j)] = computed[j];
+            }
+        }
+        hits.add(hashes.length - missed.size());
+        misses.add(missed.size());
+        return hashes;
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("cached", leaves.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hit_rate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+}
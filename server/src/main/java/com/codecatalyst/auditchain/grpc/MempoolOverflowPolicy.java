@@ -0,0 +1,11 @@
+package com.codecatalyst.auditchain.grpc;
+
+/** What the mempool does with a new audit once it holds MEMPOOL_CAPACITY audits. */
+public enum MempoolOverflowPolicy {
+    /** Refuse the audit; the client is told it failed. */
+    REJECT,
+    /** Refuse the audit with a retryable status so the client backs off and resubmits. */
+    BACKPRESSURE,
+    /** Queue the audit on disk; it is paged back into memory as committed blocks free space. */
+    SPILL
+}
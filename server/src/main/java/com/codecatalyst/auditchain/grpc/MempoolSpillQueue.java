@@ -0,0 +1,157 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-disk FIFO of audits that did not fit in the mempool.
+ *
+ * The file starts with an 8-byte header holding the read position, followed by
+ * records of [int length][FileAudit bytes] read back in order. Polled records only
+ * count as consumed once {@link #acknowledge()} stores the read position, so audits
+ * that were paged in are not handed out again after a restart. Once every record has
+ * been consumed the file is truncated back to the header. The file is not fsynced; a
+ * torn record at the tail is dropped when the queue is reopened.
+ */
+class MempoolSpillQueue {
+
+    private static final int HEADER_BYTES = Long.BYTES;
+
+    private final FileChannel channel;
+    private long readPosition;
+    private long writePosition;
+    private int pending;
+
+    MempoolSpillQueue(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    // Restores the read position, counts the unconsumed intact records and cuts off a torn tail
+    private void recover() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            channel.truncate(0);
+            writeReadPosition(HEADER_BYTES);
+            size = HEADER_BYTES;
+        }
+        ByteBuffer stored = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(stored, 0);
+        long consumed = stored.flip().getLong();
+
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        long position = HEADER_BYTES;
+        boolean onBoundary = consumed == HEADER_BYTES;
+        int unconsumed = 0;
+        while (position + Integer.BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.flip().getInt();
+            if (length < 0 || position + Integer.BYTES + length > size) {
+                break;
+            }
+            if (position >= consumed) {
+                unconsumed++;
+            }
+            position += Integer.BYTES + length;
+            pending++;
+            onBoundary |= position == consumed;
+        }
+        channel.truncate(position);
+        writePosition = position;
+        // A read position past the intact records (the file was emptied) or off a record boundary is stale
+        if (onBoundary && consumed <= position) {
+            readPosition = consumed;
+            pending = unconsumed;
+        } else {
+            readPosition = HEADER_BYTES;
+        }
+        if (pending > 0) {
+            System.out.println("💾 Mempool spill queue holds " + pending + " audit(s)");
+        }
+    }
+
+    synchronized void append(CommonProto.FileAudit audit) throws IOException {
+        byte[] bytes = audit.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        record.putInt(bytes.length).put(bytes).flip();
+        while (record.hasRemaining()) {
+            writePosition += channel.write(record, writePosition);
+        }
+        pending++;
+    }
+
+    /**
+     * Reads up to max audits in the order they were spilled. They are handed out again
+     * after a restart unless {@link #acknowledge()} is called first.
+     */
+    synchronized List<CommonProto.FileAudit> poll(int max) throws IOException {
+        List<CommonProto.FileAudit> audits = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        while (audits.size() < max && pending > 0) {
+            header.clear();
+            readFully(header, readPosition);
+            ByteBuffer body = ByteBuffer.allocate(header.flip().getInt());
+            readFully(body, readPosition + Integer.BYTES);
+            readPosition += Integer.BYTES + body.capacity();
+            pending--;
+            audits.add(CommonProto.FileAudit.parseFrom(body.flip()));
+        }
+        return audits;
+    }
+
+    /** Marks every polled audit as consumed, emptying the file once nothing is left. */
+    synchronized void acknowledge() throws IOException {
+        if (pending == 0 && writePosition > HEADER_BYTES) {
+            channel.truncate(HEADER_BYTES);
+            readPosition = HEADER_BYTES;
+            writePosition = HEADER_BYTES;
+        }
+        writeReadPosition(readPosition);
+    }
+
+    private void writeReadPosition(long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putLong(position).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /** The req_ids of the audits not yet polled, in queue order. */
+    synchronized List<String> pendingReqIds() throws IOException {
+        List<String> reqIds = new ArrayList<>(pending);
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        long position = readPosition;
+        for (int i = 0; i < pending; i++) {
+            header.clear();
+            readFully(header, position);
+            ByteBuffer body = ByteBuffer.allocate(header.flip().getInt());
+            readFully(body, position + Integer.BYTES);
+            position += Integer.BYTES + body.capacity();
+            reqIds.add(CommonProto.FileAudit.parseFrom(body.flip()).getReqId());
+        }
+        return reqIds;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of spill queue");
+            }
+        }
+    }
+
+    synchronized int size() {
+        return pending;
+    }
+}
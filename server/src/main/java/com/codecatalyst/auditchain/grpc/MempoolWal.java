@@ -0,0 +1,250 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of mempool changes, so that audits accepted but not yet committed
+ * survive a restart.
+ *
+ * Records are laid out as [1-byte type][4-byte payload length][4-byte CRC32][payload],
+ * where an ADD carries the encoded FileAudit and a REMOVE carries the req_id of an
+ * audit that was committed. A single writer thread appends whatever has queued up
+ * since its last write in one gathering write (and one fsync, if enabled), so
+ * concurrent submitters share the cost of a batch. Adds wait for their batch;
+ * removes do not, since replay skips audits that are already on chain anyway.
+ *
+ * Once the file holds mostly dead records, the writer rewrites it with only the
+ * audits still pending, which keeps both the file and replay time proportional to
+ * the pending set.
+ */
+class MempoolWal {
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final int HEADER_BYTES = 9;
+    private static final int MAX_BATCH = 4096;
+    private static final int COMPACT_MIN_RECORDS = 10_000;
+
+    private final Path file;
+    private final boolean fsync;
+    private FileChannel channel;
+    private long recordsInFile;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+    private long enqueuedSeq;
+    private long writtenSeq;
+    private long failedThroughSeq;
+    private IOException failure;
+
+    MempoolWal(Path file, boolean fsync) throws IOException {
+        Files.createDirectories(file.getParent());
+        this.file = file;
+        this.fsync = fsync;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads the log and returns the audits it still holds, in the order they were
+     * added. A torn or corrupt tail ends the replay.
+     */
+    Collection<CommonProto.FileAudit> replay() throws IOException {
+        Map<String, CommonProto.FileAudit> live = new LinkedHashMap<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long position = 0;
+        long size = channel.size();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            byte type = header.get();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_BYTES);
+            if (crc32(payload.array()) != crc) {
+                break;
+            }
+
+            if (type == ADD) {
+                CommonProto.FileAudit audit = CommonProto.FileAudit.parseFrom(payload.array());
+                live.put(audit.getReqId(), audit);
+            } else if (type == REMOVE) {
+                live.remove(new String(payload.array(), StandardCharsets.UTF_8));
+            }
+            position += HEADER_BYTES + length;
+            recordsInFile++;
+        }
+        if (position < size) {
+            System.err.println("⚠️ Mempool WAL: dropping " + (size - position) + " byte(s) of torn tail");
+        }
+        channel.truncate(position);
+        channel.position(position);
+        return live.values();
+    }
+
+    /**
+     * Replaces the log with ADD records for exactly the given audits. Called before
+     * {@link #start} and afterwards only from the writer thread.
+     */
+    void rewrite(Collection<CommonProto.FileAudit> audits) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (CommonProto.FileAudit audit : audits) {
+                ByteBuffer record = encode(ADD, audit.toByteArray());
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        recordsInFile = audits.size();
+    }
+
+    /**
+     * Starts the writer thread. The suppliers give the number and the contents of
+     * the audits still pending, for deciding when and how to compact.
+     */
+    void start(IntSupplier liveCount, Supplier<Collection<CommonProto.FileAudit>> liveAudits) {
+        Thread writer = new Thread(() -> run(liveCount, liveAudits), "mempool-wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Queues an ADD record and returns its sequence number for {@link #awaitWritten}. */
+    long logAdd(CommonProto.FileAudit audit) {
+        return enqueue(encode(ADD, audit.toByteArray()));
+    }
+
+    /** Queues a REMOVE record for a committed audit; does not wait for it to be written. */
+    void logRemove(String reqId) {
+        enqueue(encode(REMOVE, reqId.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private long enqueue(ByteBuffer record) {
+        synchronized (lock) {
+            queue.add(record);
+            lock.notifyAll();
+            return ++enqueuedSeq;
+        }
+    }
+
+    /** Blocks until the record with the given sequence number has been written (and fsynced, if enabled). */
+    void awaitWritten(long seq) throws IOException {
+        synchronized (lock) {
+            while (writtenSeq < seq) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the mempool WAL", e);
+                }
+            }
+            if (failure != null && seq <= failedThroughSeq) {
+                throw new IOException("Mempool WAL write failed", failure);
+            }
+        }
+    }
+
+    private void run(IntSupplier liveCount, Supplier<Collection<CommonProto.FileAudit>> liveAudits) {
+        List<ByteBuffer> batch = new ArrayList<>();
+        while (true) {
+            long target;
+            synchronized (lock) {
+                while (queue.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                while (!queue.isEmpty() && batch.size() < MAX_BATCH) {
+                    batch.add(queue.poll());
+                }
+                target = writtenSeq + batch.size();
+            }
+
+            IOException error = null;
+            try {
+                ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+                recordsInFile += batch.size();
+            } catch (IOException e) {
+                error = e;
+                System.err.println("❌ Mempool WAL write failed: " + e.getMessage());
+            }
+
+            synchronized (lock) {
+                if (error != null) {
+                    failure = error;
+                    failedThroughSeq = target;
+                }
+                writtenSeq = target;
+                lock.notifyAll();
+            }
+            batch.clear();
+
+            long live = liveCount.getAsInt();
+            if (recordsInFile > COMPACT_MIN_RECORDS && recordsInFile > 2 * live) {
+                try {
+                    long before = recordsInFile;
+                    rewrite(liveAudits.get());
+                    System.out.println("📝 Compacted mempool WAL from " + before + " to " + recordsInFile + " record(s)");
+                } catch (IOException e) {
+                    System.err.println("❌ Mempool WAL compaction failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer encode(byte type, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.put(type).putInt(payload.length).putInt(crc32(payload)).put(payload).flip();
+        return record;
+    }
+
+    private static int crc32(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of mempool WAL");
+            }
+        }
+    }
+}
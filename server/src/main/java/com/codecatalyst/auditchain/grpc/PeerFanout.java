@@ -0,0 +1,277 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.BlockCommitResponse;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.BlockVoteResponse;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.CommitBlockHeaderRequest;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.CommitBlockHeaderResponse;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainServiceGrpc;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the leader's ProposeBlock and CommitBlock calls to every peer at once.
+ *
+ * Each peer gets one long-lived channel and every call carries a deadline, so a dead or
+ * black-holed peer costs at most one deadline instead of stalling the round. The vote
+ * returns as soon as the outcome is decided (a majority for, or enough against that a
+ * majority is out of reach); votes still outstanding are logged as they arrive.
+ *
+ * Commits are not waited for, but they reach each peer in block order: a peer's next
+ * commit is sent only after its previous one finished. A peer that falls more than
+ * backlogLimit commits behind is skipped and catches up through NodeRecoveryManager.
+ *
+ * With headerOnly, a commit carries only the block id, hashes and req_ids: followers
+ * already have the block from the proposal they voted for, or its audits from whisper.
+ * Audits a follower does not hold are sent on request, and the full block is the
+ * fallback when the follower still cannot rebuild it.
+ */
+public class PeerFanout {
+
+    private final List<String> peers;
+    private final long voteDeadlineMillis;
+    private final long commitDeadlineMillis;
+    private final int backlogLimit;
+    private final boolean headerOnly;
+    private final int majority;
+
+    private final Map<String, ManagedChannel> channels = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> commitChains = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> commitBacklog = new ConcurrentHashMap<>();
+
+    private final AtomicLong rounds = new AtomicLong();
+    private final AtomicLong earlyDecisions = new AtomicLong();
+    private final AtomicLong lateVotes = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong skippedCommits = new AtomicLong();
+    private final AtomicLong headerCommits = new AtomicLong();
+    private final AtomicLong missingAuditsSent = new AtomicLong();
+    private final AtomicLong fullCommitFallbacks = new AtomicLong();
+
+    public PeerFanout(List<String> peers, long voteDeadlineMillis, long commitDeadlineMillis, int backlogLimit,
+                      boolean headerOnly) {
+        this.peers = List.copyOf(peers);
+        this.voteDeadlineMillis = voteDeadlineMillis;
+        this.commitDeadlineMillis = commitDeadlineMillis;
+        this.backlogLimit = backlogLimit;
+        this.headerOnly = headerOnly;
+        this.majority = (peers.size() / 2) + 1;
+    }
+
+    private BlockChainServiceGrpc.BlockChainServiceFutureStub stub(String peer) {
+        ManagedChannel channel = channels.computeIfAbsent(peer, p -> ManagedChannelBuilder.forTarget(p)
+                .usePlaintext()
+                .build());
+        return BlockChainServiceGrpc.newFutureStub(channel);
+    }
+
+    /** Proposes the block to every peer and returns whether a majority of peers voted for it. */
+    public boolean collectVotes(Block block) {
+        rounds.incrementAndGet();
+        if (peers.isEmpty()) {
+            System.err.println("❌ No peers to vote on block " + block.getId());
+            return false;
+        }
+
+        AtomicInteger votesFor = new AtomicInteger();
+        AtomicInteger votesAgainst = new AtomicInteger();
+        CompletableFuture<Boolean> decision = new CompletableFuture<>();
+
+        for (String peer : peers) {
+            ListenableFuture<BlockVoteResponse> call;
+            try {
+                call = stub(peer).withDeadlineAfter(voteDeadlineMillis, TimeUnit.MILLISECONDS).proposeBlock(block);
+            } catch (Exception e) {
+                call = Futures.immediateFailedFuture(e);
+            }
+
+            Futures.addCallback(call, new FutureCallback<BlockVoteResponse>() {
+                @Override
+                public void onSuccess(BlockVoteResponse vote) {
+                    if (decision.isDone()) {
+                        lateVotes.incrementAndGet();
+                    }
+                    System.out.println("✅ Vote from " + peer + " on block " + block.getId() + ": " + vote.getVote());
+                    tally(vote.getVote());
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    failedCalls.incrementAndGet();
+                    System.err.println("❌ Failed to propose block " + block.getId() + " to peer " + peer + ": " + t.getMessage());
+                    tally(false);
+                }
+
+                private void tally(boolean approve) {
+                    int against = approve ? votesAgainst.get() : votesAgainst.incrementAndGet();
+                    int approvals = approve ? votesFor.incrementAndGet() : votesFor.get();
+                    if (approvals >= majority) {
+                        decision.complete(true);
+                    } else if (against > peers.size() - majority) {
+                        decision.complete(false);
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        // Every call has a deadline, so the decision always arrives
+        boolean approved = decision.join();
+        if (votesFor.get() + votesAgainst.get() < peers.size()) {
+            earlyDecisions.incrementAndGet();
+        }
+        if (!approved) {
+            System.err.println("❌ Not enough votes. Block " + block.getId() + " rejected. Votes: "
+                    + votesFor.get() + "/" + peers.size());
+        }
+        return approved;
+    }
+
+    /** Sends CommitBlock to every peer without waiting, keeping each peer's commits in block order. */
+    public void commit(Block block) {
+        for (String peer : peers) {
+            AtomicInteger backlog = commitBacklog.computeIfAbsent(peer, p -> new AtomicInteger());
+            if (backlog.get() >= backlogLimit) {
+                skippedCommits.incrementAndGet();
+                System.err.println("⚠️ Peer " + peer + " is " + backlog.get() + " commits behind; skipping block "
+                        + block.getId() + ", it will catch up through recovery");
+                continue;
+            }
+
+            backlog.incrementAndGet();
+            commitChains.compute(peer, (p, previous) -> {
+                CompletableFuture<Void> after = previous == null ? CompletableFuture.completedFuture(null) : previous;
+                return after.thenCompose(ignored -> sendCommit(p, block))
+                        .whenComplete((ignored, t) -> backlog.decrementAndGet());
+            });
+        }
+    }
+
+    private CompletableFuture<Void> sendCommit(String peer, Block block) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (headerOnly) {
+            sendHeader(peer, block, Collections.emptySet(), done);
+        } else {
+            sendFullCommit(peer, block, done);
+        }
+        return done;
+    }
+
+    // The follower answers "missing" with the req_ids it could not find; they are sent once,
+    // and if that still does not do it the whole block is sent
+    private void sendHeader(String peer, Block block, Set<String> include, CompletableFuture<Void> done) {
+        CommitBlockHeaderRequest.Builder header = CommitBlockHeaderRequest.newBuilder()
+                .setId(block.getId())
+                .setHash(block.getHash())
+                .setPreviousHash(block.getPreviousHash())
+                .setMerkleRoot(block.getMerkleRoot());
+        for (CommonProto.FileAudit audit : block.getAuditsList()) {
+            header.addReqIds(audit.getReqId());
+            if (include.contains(audit.getReqId())) {
+                header.addAudits(audit);
+            }
+        }
+
+        ListenableFuture<CommitBlockHeaderResponse> call;
+        try {
+            call = stub(peer).withDeadlineAfter(commitDeadlineMillis, TimeUnit.MILLISECONDS).commitBlockHeader(header.build());
+        } catch (Exception e) {
+            call = Futures.immediateFailedFuture(e);
+        }
+
+        Futures.addCallback(call, new FutureCallback<CommitBlockHeaderResponse>() {
+            @Override
+            public void onSuccess(CommitBlockHeaderResponse resp) {
+                if ("success".equals(resp.getStatus())) {
+                    headerCommits.incrementAndGet();
+                    System.out.println("📦 Header commit of block " + block.getId() + " to " + peer + ": success");
+                    done.complete(null);
+                } else if ("missing".equals(resp.getStatus()) && include.isEmpty()) {
+                    missingAuditsSent.addAndGet(resp.getMissingReqIdsCount());
+                    sendHeader(peer, block, new HashSet<>(resp.getMissingReqIdsList()), done);
+                } else {
+                    fullCommitFallbacks.incrementAndGet();
+                    System.out.println("⚠️ Header commit of block " + block.getId() + " to " + peer + " failed ("
+                            + resp.getStatus() + " " + resp.getErrorMessage() + "); sending the full block");
+                    sendFullCommit(peer, block, done);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failedCalls.incrementAndGet();
+                System.err.println("❌ Commit of block " + block.getId() + " failed on peer " + peer + ": " + t.getMessage());
+                done.complete(null);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void sendFullCommit(String peer, Block block, CompletableFuture<Void> done) {
+        ListenableFuture<BlockCommitResponse> call;
+        try {
+            call = stub(peer).withDeadlineAfter(commitDeadlineMillis, TimeUnit.MILLISECONDS).commitBlock(block);
+        } catch (Exception e) {
+            call = Futures.immediateFailedFuture(e);
+        }
+
+        Futures.addCallback(call, new FutureCallback<BlockCommitResponse>() {
+            @Override
+            public void onSuccess(BlockCommitResponse resp) {
+                System.out.println("📦 Commit of block " + block.getId() + " to " + peer + ": " + resp.getStatus());
+                done.complete(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failedCalls.incrementAndGet();
+                System.err.println("❌ Commit of block " + block.getId() + " failed on peer " + peer + ": " + t.getMessage());
+                // Still complete normally, so the peer's later commits are sent
+                done.complete(null);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    public void shutdown() {
+        for (ManagedChannel channel : channels.values()) {
+            channel.shutdown();
+        }
+        // Channels stay mapped: commits still queued then fail on them instead of opening new ones
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("peers", peers.size());
+        stats.put("majority", majority);
+        stats.put("vote_deadline_ms", voteDeadlineMillis);
+        stats.put("commit_deadline_ms", commitDeadlineMillis);
+        stats.put("vote_rounds", rounds.get());
+        stats.put("decided_before_all_votes", earlyDecisions.get());
+        stats.put("late_votes", lateVotes.get());
+        stats.put("failed_calls", failedCalls.get());
+        stats.put("skipped_commits", skippedCommits.get());
+        stats.put("header_only_commits", headerOnly);
+        stats.put("header_commits", headerCommits.get());
+        stats.put("missing_audits_sent", missingAuditsSent.get());
+        stats.put("full_commit_fallbacks", fullCommitFallbacks.get());
+        Map<String, Integer> backlog = new LinkedHashMap<>();
+        commitBacklog.forEach((peer, count) -> backlog.put(peer, count.get()));
+        stats.put("commit_backlog", backlog);
+        return stats;
+    }
+}
@@ -0,0 +1,76 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.storage.BlockStorage;
+import com.codecatalyst.auditchain.storage.ChainTip;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The follower's view of blocks the leader has proposed but not yet committed.
+ *
+ * With a pipelined leader, the proposal for block N+1 arrives while block N is still
+ * uncommitted, so its previous_hash is checked against the pending chain tip: the
+ * committed tip when N+1 is the next block, otherwise the accepted proposal for N.
+ * A proposal for a height that was already accepted replaces it and drops everything
+ * above it, which is how a leader's rollback reaches the follower.
+ */
+public class PendingProposals {
+
+    private final int capacity;
+    private final ConcurrentSkipListMap<Long, Block> proposals = new ConcurrentSkipListMap<>();
+
+    public PendingProposals(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /** Records a proposal this node voted for. */
+    public synchronized void accept(Block block) {
+        long id = block.getId();
+        proposals.tailMap(id, false).clear();
+        proposals.put(id, block);
+        while (proposals.size() > capacity) {
+            proposals.pollFirstEntry();
+        }
+        notifyAll();
+    }
+
+    /**
+     * The hash block `id` must link to, or null when neither the committed chain nor an
+     * accepted proposal reaches block id - 1 within waitMillis.
+     */
+    public synchronized String expectedPreviousHash(long id, long waitMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        while (true) {
+            ChainTip tip = BlockStorage.getChainTip();
+            if (id == tip.getLatestBlockId() + 1) {
+                return tip.getLatestHash();
+            }
+            Block parent = proposals.get(id - 1);
+            if (parent != null) {
+                return parent.getHash();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (id <= tip.getLatestBlockId() || remaining <= 0) {
+                return null;
+            }
+            // The parent's proposal (or commit) may still be on its way
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+    }
+
+    /** Forgets proposals up to and including a block that has been committed. */
+    public synchronized void committed(long id) {
+        proposals.headMap(id, true).clear();
+        notifyAll();
+    }
+
+    public Block get(long id) {
+        return proposals.get(id);
+    }
+
+    public int size() {
+        return proposals.size();
+    }
+}
@@ -0,0 +1,224 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.storage.BlockStorage;
+import com.codecatalyst.auditchain.storage.ChainTip;
+import com.codecatalyst.auditchain.util.HashUtil;
+import com.codecatalyst.auditchain.util.MerkleEngine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The leader's consensus pipeline: up to `depth` blocks may be in flight at once, so
+ * block N+1 is built and voted on while block N is still being committed.
+ *
+ * Each new block extends the pending tip (the last block proposed, committed or not)
+ * rather than the committed chain. Votes for different blocks run concurrently, but
+ * commits stay in chain order: a round only commits once its predecessor has.
+ *
+ * Abort and rollback: when a round fails its vote (or its local save), every later
+ * in-flight round is superseded, since it extends a block that will never exist.
+ * The pending tip is rewound to the failed block's parent, and the failed and
+ * superseded rounds return their audits to the mempool. Superseded rounds never
+ * commit, even if their own vote succeeds, because they wait on their predecessor.
+ * Followers never apply a block before CommitBlock, so on their side rollback is just
+ * their pending-proposal cache being overwritten by the next proposal for that height.
+ * The leader saves a block before sending CommitBlock, so a height is only ever rolled
+ * back while no follower can have committed it.
+ */
+public class ProposalPipeline {
+
+    private final Mempool mempool;
+    private final BlockBuilder blockBuilder;
+    private final PeerFanout fanout;
+    private final int depth;
+    private final ExecutorService executor;
+
+    private final Object lock = new Object();
+    private final Deque<Round> inFlight = new ArrayDeque<>();
+    private long pendingTipId;
+    private String pendingTipHash;
+    private CompletableFuture<Boolean> lastRound = CompletableFuture.completedFuture(true);
+
+    private final AtomicLong committedBlocks = new AtomicLong();
+    private final AtomicLong abortedBlocks = new AtomicLong();
+    private final AtomicLong supersededBlocks = new AtomicLong();
+
+    private static final class Round {
+        final Block block;
+        final List<CommonProto.FileAudit> audits;
+        final CompletableFuture<Boolean> predecessor;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        final long startNanos = System.nanoTime();
+        volatile boolean superseded;
+
+        Round(Block block, List<CommonProto.FileAudit> audits, CompletableFuture<Boolean> predecessor) {
+            this.block = block;
+            this.audits = audits;
+            this.predecessor = predecessor;
+        }
+    }
+
+    public ProposalPipeline(Mempool mempool, BlockBuilder blockBuilder, PeerFanout fanout, int depth) {
+        this.mempool = mempool;
+        this.blockBuilder = blockBuilder;
+        this.fanout = fanout;
+        this.depth = Math.max(1, depth);
+        this.executor = Executors.newFixedThreadPool(this.depth, r -> {
+            Thread thread = new Thread(r, "proposal-round");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean hasCapacity() {
+        synchronized (lock) {
+            return inFlight.size() < depth;
+        }
+    }
+
+    /** Builds a block of the given audits on top of the pending tip and starts its consensus round. */
+    public void submit(List<CommonProto.FileAudit> audits) {
+        Round round;
+        synchronized (lock) {
+            if (inFlight.isEmpty()) {
+                // Nothing in flight: the pending tip is the committed chain tip
+                ChainTip tip = BlockStorage.getChainTip();
+                pendingTipId = tip.getLatestBlockId();
+                pendingTipHash = tip.getLatestHash();
+                lastRound = CompletableFuture.completedFuture(true);
+            }
+
+            int blockId = (int) (pendingTipId + 1);
+            String merkleRoot = MerkleEngine.rootHex(mempool.leafHashes(audits));  // leaves were hashed at admission
+            String hash = HashUtil.computeBlockHash(blockId, pendingTipHash, audits, merkleRoot);
+            Block block = Block.newBuilder()
+                    .setId(blockId)
+                    .setHash(hash)
+                    .setPreviousHash(pendingTipHash)
+                    .addAllAudits(audits)
+                    .setMerkleRoot(merkleRoot)
+                    .build();
+
+            round = new Round(block, audits, lastRound);
+            inFlight.addLast(round);
+            pendingTipId = blockId;
+            pendingTipHash = hash;
+            lastRound = round.result;
+        }
+
+        System.out.println("🧱 Proposing block " + round.block.getId() + " with " + audits.size()
+                + " audit(s), " + inFlightCount() + " block(s) in flight");
+        executor.submit(() -> run(round));
+    }
+
+    private void run(Round round) {
+        boolean committed = false;
+        try {
+            boolean approved = fanout.collectVotes(round.block);
+            // Commits stay in chain order: wait for the previous block's round to finish
+            boolean predecessorCommitted = round.predecessor.join();
+            if (approved && predecessorCommitted && !round.superseded) {
+                committed = commit(round.block);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Proposal round for block " + round.block.getId() + " failed: " + e.getMessage());
+        } finally {
+            finish(round, committed);
+        }
+    }
+
+    private void finish(Round round, boolean committed) {
+        synchronized (lock) {
+            inFlight.remove(round);
+            if (!committed && !round.superseded) {
+                // Roll back: later rounds extend this block, so none of them can commit
+                for (Round later : inFlight) {
+                    if (later.block.getId() > round.block.getId()) {
+                        later.superseded = true;
+                    }
+                }
+                pendingTipId = round.block.getId() - 1;
+                pendingTipHash = round.block.getPreviousHash();
+                lastRound = round.predecessor;
+            }
+        }
+
+        long latencyMs = (System.nanoTime() - round.startNanos) / 1_000_000;
+        if (committed) {
+            committedBlocks.incrementAndGet();
+            blockBuilder.recordCommit(round.audits.size(), latencyMs, true);
+            System.out.println("⏱️ Block " + round.block.getId() + " of " + round.audits.size() + " audit(s) committed in "
+                    + latencyMs + " ms, next batch target " + blockBuilder.getBatchTarget());
+        } else {
+            if (round.superseded) {
+                supersededBlocks.incrementAndGet();
+            } else {
+                abortedBlocks.incrementAndGet();
+                blockBuilder.recordCommit(round.audits.size(), latencyMs, false);
+            }
+            mempool.restore(round.audits);
+            System.out.println("↩️ Block " + round.block.getId() + (round.superseded ? " superseded" : " aborted")
+                    + ", returned " + round.audits.size() + " audit(s) to the mempool.");
+        }
+        round.result.complete(committed);
+    }
+
+    private boolean commit(Block block) {
+        System.out.println("🟢 Majority reached. Committing block " + block.getId() + " to self and all peers...");
+
+        // ✅ Commit locally first: if this fails no follower has the block yet, so its height can be rolled back
+        if (!BlockStorage.saveBlock(block)) {
+            System.err.println("❌ Failed to save block " + block.getId() + " locally; not sending it to peers.");
+            return false;
+        }
+
+        // The block is committed now and must not be rolled back, whatever happens to the fanout;
+        // followers that miss the commit catch up through recovery
+        try {
+            mempool.removeAll(reqIdsOf(block));
+            fanout.commit(block);
+        } catch (Exception e) {
+            System.err.println("⚠️ Block " + block.getId() + " committed locally, but sending it to peers failed: " + e.getMessage());
+        }
+        return true;
+    }
+
+    static List<String> reqIdsOf(Block block) {
+        List<String> reqIds = new ArrayList<>(block.getAuditsCount());
+        for (CommonProto.FileAudit audit : block.getAuditsList()) {
+            reqIds.add(audit.getReqId());
+        }
+        return reqIds;
+    }
+
+    public int inFlightCount() {
+        synchronized (lock) {
+            return inFlight.size();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (lock) {
+            stats.put("depth", depth);
+            stats.put("in_flight", inFlight.size());
+            stats.put("pending_tip_id", pendingTipId);
+            stats.put("pending_tip_hash", pendingTipHash);
+        }
+        stats.put("committed_blocks", committedBlocks.get());
+        stats.put("aborted_blocks", abortedBlocks.get());
+        stats.put("superseded_blocks", supersededBlocks.get());
+        return stats;
+    }
+}
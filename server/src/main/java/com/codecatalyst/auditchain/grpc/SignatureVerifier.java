@@ -1,75 +1,151 @@
 package com.codecatalyst.auditchain.grpc;
 
+import com.codecatalyst.auditchain.config.Config;
 import com.codecatalyst.auditchain.proto.common.CommonProto;
-import com.google.gson.Gson;
+import com.codecatalyst.auditchain.util.CanonicalAuditEncoder;
+import com.codecatalyst.auditchain.util.ConcurrentLruCache;
 
-import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
 import java.util.Base64;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SignatureVerifier {
 
-    private static final Gson gson = new Gson();
+    // Parsed keys by PEM string; a handful of client services sign nearly every audit. Every
+    // verifying thread looks keys up here, so the cache must not serialize them
+    private static final ConcurrentLruCache<String, PublicKey> publicKeys =
+            new ConcurrentLruCache<>(Config.PUBLIC_KEY_CACHE_CAPACITY);
+
+    // Signature and KeyFactory instances are not thread-safe; each verifying thread keeps its own
+    private static final ThreadLocal<Signature> signatures = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("SHA256withRSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<KeyFactory> keyFactories = ThreadLocal.withInitial(() -> {
+        try {
+            return KeyFactory.getInstance("RSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // Blocks smaller than this are verified on the calling thread
+    private static final int MIN_AUDITS_PER_TASK = 8;
+    private static final ExecutorService verifyPool = Executors.newFixedThreadPool(Config.SIGNATURE_VERIFY_THREADS, r -> {
+        Thread thread = new Thread(r, "signature-verify");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public static boolean verify(CommonProto.FileAudit audit) {
         try {
-            // Step 1: Decode PEM public key
-            String cleanedPem = audit.getPublicKey()
-                    .replace("-----BEGIN PUBLIC KEY-----", "")
-                    .replace("-----END PUBLIC KEY-----", "")
-                    .replaceAll("\\s+", "");
-            byte[] pubKeyBytes = Base64.getDecoder().decode(cleanedPem);
-            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(pubKeyBytes);
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            PublicKey publicKey = keyFactory.generatePublic(keySpec);
-
-            // Step 2: Reconstruct audit JSON map in Go's key order
-            String jsonString = getAuditInJsonFormat(audit);
-            System.out.println("Reconstructed JSON for verification:\n" + jsonString);
-
-            // Step 4: Verify the signature using SHA256withRSA
-            Signature sig = Signature.getInstance("SHA256withRSA");
+            // Step 1: Decode PEM public key (parsed once per distinct key)
+            PublicKey publicKey = publicKey(audit.getPublicKey());
+
+            // Step 2: Canonical audit JSON in Go's key order (encoded once per audit and shared with hashing)
+            byte[] json = CanonicalAuditEncoder.encode(audit);
+
+            // Step 3: Verify the signature using SHA256withRSA
+            Signature sig = signatures.get();
             sig.initVerify(publicKey);
-            sig.update(jsonString.getBytes(StandardCharsets.UTF_8));  // ⚠️ Do not hash manually!
+            sig.update(json);  // ⚠️ Do not hash manually!
 
             byte[] signatureBytes = Base64.getDecoder().decode(audit.getSignature());
             boolean result = sig.verify(signatureBytes);
 
             if (!result) {
-                System.err.println("❌ Signature mismatch.");
+                System.err.println("❌ Signature mismatch for audit " + audit.getReqId() + ".");
             }
 
             return result;
 
         } catch (Exception e) {
-            System.err.println("❌ Signature verification failed: " + e.getMessage());
+            System.err.println("❌ Signature verification failed for audit " + audit.getReqId() + ": " + e.getMessage());
             return false;
         }
     }
 
-    public static String getAuditInJsonFormat(CommonProto.FileAudit audit) {
-        Map<String, Object> auditMap = new LinkedHashMap<>();
+    /**
+     * Verifies every audit's signature, spread over the verification pool, and returns
+     * false as soon as one fails; the remaining audits of the batch are then skipped.
+     * The calling thread verifies a share of the batch itself.
+     */
+    public static boolean verifyAll(List<CommonProto.FileAudit> audits) {
+        int tasks = Math.min(Config.SIGNATURE_VERIFY_THREADS, audits.size() / MIN_AUDITS_PER_TASK);
+        if (tasks <= 1) {
+            for (CommonProto.FileAudit audit : audits) {
+                if (!verify(audit)) {
+                    return false;
+                }
+            }
+            return true;
+        }
 
-        auditMap.put("access_type", audit.getAccessType().getNumber());
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int i;
+            while (!failed.get() && (i = next.getAndIncrement()) < audits.size()) {
+                if (!verify(audits.get(i))) {
+                    failed.set(true);
+                }
+            }
+        };
 
-        Map<String, Object> fileInfo = new LinkedHashMap<>();
-        fileInfo.put("file_id", audit.getFileInfo().getFileId());
-        fileInfo.put("file_name", audit.getFileInfo().getFileName());
-        auditMap.put("file_info", fileInfo);
+        List<Future<?>> helpers = new ArrayList<>(tasks - 1);
+        for (int t = 1; t < tasks; t++) {
+            helpers.add(verifyPool.submit(worker));
+        }
+        worker.run();
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+            } catch (ExecutionException e) {
+                failed.set(true);
+            }
+        }
+        return !failed.get();
+    }
 
-        auditMap.put("req_id", audit.getReqId());
-        auditMap.put("timestamp", audit.getTimestamp());
+    static PublicKey publicKey(String pem) throws GeneralSecurityException {
+        PublicKey publicKey = publicKeys.get(pem);
+        if (publicKey != null) {
+            return publicKey;
+        }
 
-        Map<String, Object> userInfo = new LinkedHashMap<>();
-        userInfo.put("user_id", audit.getUserInfo().getUserId());
-        userInfo.put("user_name", audit.getUserInfo().getUserName());
-        auditMap.put("user_info", userInfo);
+        String cleanedPem = pem
+                .replace("-----BEGIN PUBLIC KEY-----", "")
+                .replace("-----END PUBLIC KEY-----", "")
+                .replaceAll("\\s+", "");
+        byte[] pubKeyBytes = Base64.getDecoder().decode(cleanedPem);
+        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(pubKeyBytes);
+        publicKey = keyFactories.get().generatePublic(keySpec);
 
-        // Step 3: Serialize JSON (same as Go's json.Marshal with sorted keys)
-        String jsonString = gson.toJson(auditMap);
-        return jsonString;
+        publicKeys.put(pem, publicKey);
+        return publicKey;
+    }
+
+    public static Map<String, Object> publicKeyCacheStats() {
+        return publicKeys.stats();
+    }
+
+    /** The audit's canonical JSON, as signed by the client (see {@link CanonicalAuditEncoder}). */
+    public static String getAuditInJsonFormat(CommonProto.FileAudit audit) {
+        return CanonicalAuditEncoder.encodeToString(audit);
     }
 }
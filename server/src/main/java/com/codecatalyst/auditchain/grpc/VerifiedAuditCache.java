@@ -0,0 +1,85 @@
+package com.codecatalyst.auditchain.grpc;
+
+import com.codecatalyst.auditchain.config.Config;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.util.ConcurrentLruCache;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Audits whose signature this node has already verified, so an audit is RSA-checked
+ * once per node (at submit or whisper) instead of again when its block is proposed.
+ *
+ * Entries are keyed by req_id and hold a SHA-256 digest of the whole serialized audit,
+ * signature and public key included: an audit only counts as verified if every field
+ * is identical to the one that was checked.
+ */
+public class VerifiedAuditCache {
+
+    // On the admission path of every submit and whisper, so lookups must not take a lock
+    private static final ConcurrentLruCache<String, byte[]> verified =
+            new ConcurrentLruCache<>(Config.VERIFIED_AUDIT_CACHE_CAPACITY);
+
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /** Verifies the audit's signature unless this exact audit was verified before. */
+    public static boolean verify(CommonProto.FileAudit audit) {
+        byte[] digest = digest(audit);
+        byte[] known = verified.get(audit.getReqId());
+        if (known != null && MessageDigest.isEqual(known, digest)) {
+            return true;
+        }
+
+        boolean valid = SignatureVerifier.verify(audit);
+        if (valid) {
+            verified.put(audit.getReqId(), digest);
+        }
+        return valid;
+    }
+
+    /**
+     * Verifies a block's audits, skipping the ones this node already verified; the rest
+     * go through {@link SignatureVerifier#verifyAll} in one parallel batch.
+     */
+    public static boolean verifyAll(List<CommonProto.FileAudit> audits) {
+        List<CommonProto.FileAudit> unverified = new ArrayList<>();
+        List<byte[]> digests = new ArrayList<>();
+        for (CommonProto.FileAudit audit : audits) {
+            byte[] digest = digest(audit);
+            byte[] known = verified.get(audit.getReqId());
+            if (known == null || !MessageDigest.isEqual(known, digest)) {
+                unverified.add(audit);
+                digests.add(digest);
+            }
+        }
+
+        if (unverified.isEmpty()) {
+            return true;
+        }
+        if (!SignatureVerifier.verifyAll(unverified)) {
+            return false;
+        }
+        for (int i = 0; i < unverified.size(); i++) {
+            verified.put(unverified.get(i).getReqId(), digests.get(i));
+        }
+        return true;
+    }
+
+    private static byte[] digest(CommonProto.FileAudit audit) {
+        return sha256.get().digest(audit.toByteArray());
+    }
+
+    public static Map<String, Object> stats() {
+        return verified.stats();
+    }
+}
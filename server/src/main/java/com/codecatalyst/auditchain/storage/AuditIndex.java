@@ -0,0 +1,204 @@
+package com.codecatalyst.auditchain.storage;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary indexes over committed audits: req_id, file_id and user_id, each mapped
+ * to the (block id, position) where the audit landed.
+ *
+ * The index lives in memory and is persisted as part of each checkpoint (see
+ * {@link CheckpointManager}); on startup it is restored from the latest checkpoint
+ * and BlockStorage re-indexes the blocks committed after it.
+ *
+ * The hash each block id was indexed with is remembered, so saving the same block again
+ * is a no-op, and a block id saved again with different contents first has the old
+ * block's entries removed (a scan of the whole index, but replacements are rare).
+ * Callers still resolve locations against the stored block and drop entries that no
+ * longer match.
+ */
+public class AuditIndex {
+
+    private final Map<String, AuditLocation> byReqId = new HashMap<>();
+    private final Map<String, List<AuditLocation>> byFileId = new HashMap<>();
+    private final Map<String, List<AuditLocation>> byUserId = new HashMap<>();
+    // Block id -> hash of the block indexed under it
+    private final Map<Long, String> indexedBlocks = new HashMap<>();
+    // Checkpoints do not carry block hashes, so restored blocks are re-indexed as replacements
+    private static final String UNKNOWN_HASH = "";
+
+    /** Adds every audit of a committed block to the index, replacing a different block indexed under its id. */
+    public synchronized void indexBlock(Block block) {
+        String previousHash = indexedBlocks.put(block.getId(), block.getHash());
+        if (block.getHash().equals(previousHash)) {
+            return;
+        }
+        if (previousHash != null) {
+            removeBlock(block.getId());
+        }
+
+        List<CommonProto.FileAudit> audits = block.getAuditsList();
+        for (int i = 0; i < audits.size(); i++) {
+            CommonProto.FileAudit audit = audits.get(i);
+            AuditLocation location = new AuditLocation(block.getId(), i);
+            byReqId.put(audit.getReqId(), location);
+            byFileId.computeIfAbsent(audit.getFileInfo().getFileId(), k -> new ArrayList<>()).add(location);
+            byUserId.computeIfAbsent(audit.getUserInfo().getUserId(), k -> new ArrayList<>()).add(location);
+        }
+    }
+
+    private void removeBlock(long blockId) {
+        byReqId.values().removeIf(location -> location.getBlockId() == blockId);
+        removeFrom(byFileId, blockId);
+        removeFrom(byUserId, blockId);
+    }
+
+    private static void removeFrom(Map<String, List<AuditLocation>> map, long blockId) {
+        map.values().removeIf(locations -> {
+            locations.removeIf(location -> location.getBlockId() == blockId);
+            return locations.isEmpty();
+        });
+    }
+
+    public synchronized AuditLocation findByReqId(String reqId) {
+        return byReqId.get(reqId);
+    }
+
+    public synchronized List<AuditLocation> findByFileId(String fileId) {
+        return copyOf(byFileId.get(fileId));
+    }
+
+    public synchronized List<AuditLocation> findByUserId(String userId) {
+        return copyOf(byUserId.get(userId));
+    }
+
+    public synchronized int size() {
+        return byReqId.size();
+    }
+
+    public synchronized void clear() {
+        byReqId.clear();
+        byFileId.clear();
+        byUserId.clear();
+        indexedBlocks.clear();
+    }
+
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(byReqId.size());
+        for (Map.Entry<String, AuditLocation> entry : byReqId.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().writeTo(out);
+        }
+        writeMultiMap(out, byFileId);
+        writeMultiMap(out, byUserId);
+    }
+
+    /**
+     * Replaces the contents of the index with a snapshot written by {@link #writeTo}.
+     * Duplicate locations (written by older versions that indexed a re-saved block twice)
+     * are dropped.
+     */
+    public synchronized void restore(DataInputStream in) throws IOException {
+        clear();
+        int reqIds = in.readInt();
+        for (int i = 0; i < reqIds; i++) {
+            byReqId.put(in.readUTF(), AuditLocation.readFrom(in));
+        }
+        readMultiMap(in, byFileId);
+        readMultiMap(in, byUserId);
+
+        for (AuditLocation location : byReqId.values()) {
+            indexedBlocks.put(location.getBlockId(), UNKNOWN_HASH);
+        }
+        markIndexed(byFileId);
+        markIndexed(byUserId);
+    }
+
+    private void markIndexed(Map<String, List<AuditLocation>> map) {
+        for (List<AuditLocation> locations : map.values()) {
+            for (AuditLocation location : locations) {
+                indexedBlocks.put(location.getBlockId(), UNKNOWN_HASH);
+            }
+        }
+    }
+
+    private static void writeMultiMap(DataOutputStream out, Map<String, List<AuditLocation>> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, List<AuditLocation>> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (AuditLocation location : entry.getValue()) {
+                location.writeTo(out);
+            }
+        }
+    }
+
+    private static void readMultiMap(DataInputStream in, Map<String, List<AuditLocation>> map) throws IOException {
+        int keys = in.readInt();
+        for (int i = 0; i < keys; i++) {
+            String key = in.readUTF();
+            int count = in.readInt();
+            Set<AuditLocation> locations = new LinkedHashSet<>(count * 2);
+            for (int j = 0; j < count; j++) {
+                locations.add(AuditLocation.readFrom(in));
+            }
+            map.put(key, new ArrayList<>(locations));
+        }
+    }
+
+    private static List<AuditLocation> copyOf(List<AuditLocation> locations) {
+        return locations == null ? Collections.emptyList() : new ArrayList<>(locations);
+    }
+
+    public static final class AuditLocation {
+        private final long blockId;
+        private final int position;
+
+        public AuditLocation(long blockId, int position) {
+            this.blockId = blockId;
+            this.position = position;
+        }
+
+        public long getBlockId() {
+            return blockId;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(blockId);
+            out.writeInt(position);
+        }
+
+        static AuditLocation readFrom(DataInputStream in) throws IOException {
+            return new AuditLocation(in.readLong(), in.readInt());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AuditLocation)) {
+                return false;
+            }
+            AuditLocation other = (AuditLocation) o;
+            return blockId == other.blockId && position == other.position;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(blockId) * 31 + position;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.codecatalyst.auditchain.storage;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.util.LatencyHistogram;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segmented log of protobuf-encoded blocks.
+ *
+ * Every segment file (segment_00000000.log) is a sequence of records laid out as
+ *   [8-byte block id][4-byte payload length][4-byte CRC32 of payload][payload]
+ * and has a sidecar index (segment_00000000.idx) of fixed 16-byte (block id, offset)
+ * entries so that startup never has to read the blocks themselves. Once a segment
+ * grows past SEGMENT_MAX_BYTES it is sealed and a new one is started.
+ *
+ * Block ids are dense, so the in-memory index is a plain long[] addressed by block id
+ * holding (segment << 40 | offset), or -1 for a missing block. Sealed segments are
+ * memory-mapped read-only and served straight from the mapping; only the active
+ * segment is read through the channel.
+ *
+ * Writes are serialized on the log; reads may run concurrently with each other and
+ * with appends. How an append is made durable is governed by the {@link DurabilityMode},
+ * which can be switched at runtime; commit latency is tracked per mode.
+ */
+public class BlockLog {
+
+    static final int HEADER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 16;
+    private static final long SEGMENT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final long MISSING = -1;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment_(\\d+)\\.log");
+
+    private final Path dir;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final GroupCommitter groupCommitter;
+    private final Map<DurabilityMode, LatencyHistogram> commitLatency = new EnumMap<>(DurabilityMode.class);
+    private volatile DurabilityMode durabilityMode;
+    private Segment active;
+    private long writeSeq;
+
+    // Republished after every write so readers always see a fully written entry.
+    private volatile long[] locations = newLocations(1024);
+    private volatile int blockCount;
+    private volatile long highestBlockId = -1;
+
+    private BlockLog(Path dir, DurabilityMode durabilityMode, long groupCommitWindowMillis) {
+        this.dir = dir;
+        this.durabilityMode = durabilityMode;
+        this.groupCommitter = new GroupCommitter(groupCommitWindowMillis);
+        for (DurabilityMode mode : DurabilityMode.values()) {
+            commitLatency.put(mode, new LatencyHistogram());
+        }
+    }
+
+    public static BlockLog open(Path dir, DurabilityMode durabilityMode, long groupCommitWindowMillis) throws IOException {
+        Files.createDirectories(dir);
+        BlockLog log = new BlockLog(dir, durabilityMode, groupCommitWindowMillis);
+
+        List<Integer> numbers;
+        try (Stream<Path> files = Files.list(dir)) {
+            numbers = files.map(p -> SEGMENT_NAME.matcher(p.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(m -> Integer.parseInt(m.group(1)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        for (int number : numbers) {
+            if (log.active != null) {
+                log.active.seal();
+            }
+            Segment segment = Segment.open(dir, number);
+            log.segments.put(number, segment);
+            log.recover(segment);
+            log.active = segment;
+        }
+
+        if (log.active == null) {
+            log.active = Segment.open(dir, 0);
+            log.segments.put(0, log.active);
+        }
+
+        System.out.println("📚 Block log opened at " + dir + ": " + log.blockCount
+                + " blocks in " + log.segments.size() + " segment(s), durability " + durabilityMode);
+        return log;
+    }
+
+    /**
+     * Loads the sidecar index of a segment and then scans the log past the last
+     * indexed record. Records that made it into the log but not into the index
+     * (crash between the two writes) are re-indexed; a torn or corrupt tail is
+     * truncated away.
+     */
+    private void recover(Segment segment) throws IOException {
+        long indexSize = segment.idx.size();
+        long usableIndex = indexSize - (indexSize % INDEX_ENTRY_BYTES);
+        if (usableIndex != indexSize) {
+            segment.idx.truncate(usableIndex);
+        }
+
+        long scanFrom = 0;
+        if (usableIndex > 0) {
+            ByteBuffer entries = ByteBuffer.allocate((int) usableIndex);
+            readFully(segment.idx, entries, 0);
+            entries.flip();
+            while (entries.remaining() >= INDEX_ENTRY_BYTES) {
+                long blockId = entries.getLong();
+                long offset = entries.getLong();
+                int length = readPayloadLength(segment.log, offset);
+                if (length < 0) {
+                    // Index points past what the log holds: drop it and everything after it.
+                    segment.idx.truncate(entries.position() - INDEX_ENTRY_BYTES);
+                    break;
+                }
+                recordLocation(blockId, segment.number, offset);
+                scanFrom = offset + HEADER_BYTES + length;
+            }
+        }
+
+        long logSize = segment.log.size();
+        long position = scanFrom;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= logSize) {
+            header.clear();
+            readFully(segment.log, header, position);
+            header.flip();
+            long blockId = header.getLong();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || position + HEADER_BYTES + length > logSize) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(segment.log, payload, position + HEADER_BYTES);
+            payload.flip();
+            if (crc(payload) != checksum) {
+                break;
+            }
+            writeIndexEntry(segment, blockId, position);
+            recordLocation(blockId, segment.number, position);
+            position += HEADER_BYTES + length;
+        }
+
+        if (position < logSize) {
+            System.err.println("⚠️ Truncating " + (logSize - position) + " torn byte(s) from segment " + segment.number);
+            segment.log.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    /**
+     * Appends a block and returns true if its id was not stored before (a re-saved
+     * id supersedes the earlier record). Returns once the block is as durable as the
+     * current {@link DurabilityMode} requires.
+     */
+    public boolean append(Block block) throws IOException {
+        long start = System.nanoTime();
+        DurabilityMode mode = durabilityMode;
+        boolean newBlock;
+        long seq;
+
+        synchronized (this) {
+            if (active.size >= SEGMENT_MAX_BYTES) {
+                roll(mode);
+            }
+
+            byte[] payload = block.toByteArray();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(block.getId()).putInt(payload.length).putInt(crc(ByteBuffer.wrap(payload)));
+            header.flip();
+
+            long offset = active.size;
+            ByteBuffer[] record = {header, ByteBuffer.wrap(payload)};
+            active.log.position(offset);
+            while (record[1].hasRemaining()) {
+                active.log.write(record);
+            }
+            writeIndexEntry(active, block.getId(), offset);
+
+            active.size = offset + HEADER_BYTES + payload.length;
+            newBlock = recordLocation(block.getId(), active.number, offset);
+            seq = ++writeSeq;
+
+            if (mode == DurabilityMode.FSYNC_PER_BLOCK) {
+                active.log.force(false);
+            } else if (mode == DurabilityMode.GROUP_COMMIT) {
+                groupCommitter.written(seq, active.log);
+            }
+        }
+
+        if (mode == DurabilityMode.GROUP_COMMIT) {
+            groupCommitter.awaitDurable(seq);
+        }
+        commitLatency.get(mode).recordNanos(System.nanoTime() - start);
+        return newBlock;
+    }
+
+    private void roll(DurabilityMode mode) throws IOException {
+        if (mode != DurabilityMode.NONE) {
+            // Later group commits only force the new segment
+            active.log.force(false);
+        }
+        active.seal();
+        int next = active.number + 1;
+        Segment segment = Segment.open(dir, next);
+        segments.put(next, segment);
+        active = segment;
+        System.out.println("📚 Rolled block log to segment " + next);
+    }
+
+    // Callers hold the log's monitor (or are still inside open()).
+    private boolean recordLocation(long blockId, int segment, long offset) {
+        long[] current = locations;
+        if (blockId >= current.length) {
+            int size = current.length;
+            while (blockId >= size) {
+                size *= 2;
+            }
+            long[] grown = newLocations(size);
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+        }
+        boolean newBlock = current[(int) blockId] == MISSING;
+        current[(int) blockId] = ((long) segment << OFFSET_BITS) | offset;
+        if (newBlock) {
+            blockCount++;
+        }
+        if (blockId > highestBlockId) {
+            highestBlockId = blockId;
+        }
+        locations = current;
+        return newBlock;
+    }
+
+    private long locate(long blockId) {
+        long[] current = locations;
+        if (blockId < 0 || blockId >= current.length) {
+            return MISSING;
+        }
+        return current[(int) blockId];
+    }
+
+    /**
+     * Returns the serialized block without copying it: for a sealed segment the
+     * ByteString is a view of the memory-mapped file, for the active segment it
+     * wraps a freshly read buffer. Returns null for an unknown id.
+     */
+    public ByteString readBytes(long blockId) throws IOException {
+        long location = locate(blockId);
+        if (location == MISSING) {
+            return null;
+        }
+        int segmentNumber = (int) (location >>> OFFSET_BITS);
+        long offset = location & OFFSET_MASK;
+        Segment segment = segments.get(segmentNumber);
+
+        ByteBuffer record;
+        MappedByteBuffer mapped = segment.mapped;
+        if (mapped != null) {
+            record = mapped.duplicate();
+            record.position((int) offset);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(segment.log, header, offset);
+            header.flip();
+            record = ByteBuffer.allocate(HEADER_BYTES + header.getInt(8));
+            record.put(header);
+            readFully(segment.log, record, offset + HEADER_BYTES);
+            record.flip();
+        }
+
+        long storedId = record.getLong();
+        int length = record.getInt();
+        int checksum = record.getInt();
+        ByteBuffer payload = record.slice();
+        payload.limit(length);
+        if (storedId != blockId || crc(payload.duplicate()) != checksum) {
+            throw new IOException("Corrupt block record for block " + blockId + " in segment " + segmentNumber);
+        }
+        return UnsafeByteOperations.unsafeWrap(payload);
+    }
+
+    public Block read(long blockId) throws IOException {
+        ByteString bytes = readBytes(blockId);
+        return bytes == null ? null : Block.parseFrom(bytes);
+    }
+
+    public boolean contains(long blockId) {
+        return locate(blockId) != MISSING;
+    }
+
+    /** Number of distinct block ids stored in the log. */
+    public int blockCount() {
+        return blockCount;
+    }
+
+    public long highestBlockId() {
+        return highestBlockId;
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    public void setDurabilityMode(DurabilityMode mode) {
+        durabilityMode = mode;
+        System.out.println("💾 Block log durability set to " + mode);
+    }
+
+    /** Commit-latency distribution for every durability mode that has seen appends. */
+    public Map<String, Object> durabilityStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", durabilityMode.name());
+        Map<String, Object> latency = new LinkedHashMap<>();
+        for (Map.Entry<DurabilityMode, LatencyHistogram> entry : commitLatency.entrySet()) {
+            latency.put(entry.getKey().name(), entry.getValue().snapshot());
+        }
+        stats.put("commit_latency", latency);
+        return stats;
+    }
+
+    /** Forces every segment to stable storage, e.g. after bulk appends made with {@link DurabilityMode#NONE}. */
+    public synchronized void force() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.log.force(false);
+        }
+    }
+
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.log.close();
+                segment.idx.close();
+            } catch (IOException e) {
+                System.err.println("❌ Failed to close segment " + segment.number + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static long[] newLocations(int size) {
+        long[] array = new long[size];
+        Arrays.fill(array, MISSING);
+        return array;
+    }
+
+    private static void writeIndexEntry(Segment segment, long blockId, long offset) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        entry.putLong(blockId).putLong(offset);
+        entry.flip();
+        long position = segment.idx.size();
+        while (entry.hasRemaining()) {
+            position += segment.idx.write(entry, position);
+        }
+    }
+
+    private static int readPayloadLength(FileChannel log, long offset) throws IOException {
+        if (offset + HEADER_BYTES > log.size()) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(log, header, offset);
+        int length = header.getInt(8);
+        return offset + HEADER_BYTES + length > log.size() ? -1 : length;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of block log");
+            }
+            position += n;
+        }
+    }
+
+    static int crc(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    static final class Segment {
+        final int number;
+        final FileChannel log;
+        final FileChannel idx;
+        long size;
+        volatile MappedByteBuffer mapped;
+
+        private Segment(int number, FileChannel log, FileChannel idx) {
+            this.number = number;
+            this.log = log;
+            this.idx = idx;
+        }
+
+        static Segment open(Path dir, int number) throws IOException {
+            String base = String.format("segment_%08d", number);
+            FileChannel log = FileChannel.open(dir.resolve(base + ".log"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileChannel idx = FileChannel.open(dir.resolve(base + ".idx"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(number, log, idx);
+        }
+
+        /** Maps a segment that will receive no further writes. */
+        void seal() throws IOException {
+            if (mapped == null && size > 0) {
+                mapped = log.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+    }
+}
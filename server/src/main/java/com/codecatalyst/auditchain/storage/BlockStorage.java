@@ -1,114 +1,353 @@
 package com.codecatalyst.auditchain.storage;
 
+import com.codecatalyst.auditchain.config.Config;
 import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
-import com.google.protobuf.util.JsonFormat;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.util.LruCache;
+import com.google.protobuf.ByteString;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 public class BlockStorage {
-    private static final String BLOCKS_DIR = "data/blocks";
+    private static final String BLOCKS_DIR = "data/blocks";        // legacy one-JSON-file-per-block layout
+    private static final String BLOCK_LOG_DIR = "data/blocklog";
+    private static final String CHECKPOINT_DIR = "data/checkpoints";
+    private static final String COMMITTED_DIR = "data/committed";
 
-    public static boolean saveBlock(Block block) {
+    private static final BlockLog blockLog = openBlockLog();
+    private static final LruCache<Long, Block> blockCache = new LruCache<>(Config.BLOCK_CACHE_CAPACITY);
+    private static final AtomicReference<ChainTip> chainTip = new AtomicReference<>(ChainTip.EMPTY);
+    private static final AuditIndex auditIndex = new AuditIndex();
+    private static final CommittedRequests committedRequests = openCommittedRequests();
+    private static final CheckpointManager checkpoints = openCheckpoints();
+
+    // Guards applying a saved block to the derived state (tip, index) against checkpoints
+    private static final Object applyLock = new Object();
+    // Ids below the tip that have not been applied yet (missing blocks recovery may still fill in)
+    private static final TreeSet<Long> gaps = new TreeSet<>();
+    private static final ExecutorService checkpointExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicBoolean checkpointPending = new AtomicBoolean();
+    // Block ids saved again with different contents (a re-saved id supersedes the old block)
+    private static final AtomicLong replacedBlocks = new AtomicLong();
+    // Bumped by every save before it caches its block, so a reader can tell its read may be stale
+    private static final AtomicLong blockSaves = new AtomicLong();
+    private static final List<LongConsumer> replacedBlockListeners = new CopyOnWriteArrayList<>();
+
+    static {
+        restoreDerivedState();
+    }
+
+    private static BlockLog openBlockLog() {
+        try {
+            BlockLog log = BlockLog.open(Path.of(BLOCK_LOG_DIR), Config.BLOCK_DURABILITY, Config.GROUP_COMMIT_WINDOW_MS);
+            JsonBlockMigrator.migrateIfPresent(Path.of(BLOCKS_DIR), log);
+            return log;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open block log at " + BLOCK_LOG_DIR, e);
+        }
+    }
+
+    private static CommittedRequests openCommittedRequests() {
+        try {
+            return new CommittedRequests(Path.of(COMMITTED_DIR), Config.COMMITTED_FILTER_EXPECTED_AUDITS,
+                    Config.COMMITTED_FILTER_FALSE_POSITIVE_RATE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open committed req_id set at " + COMMITTED_DIR, e);
+        }
+    }
+
+    private static CheckpointManager openCheckpoints() {
+        try {
+            return new CheckpointManager(Path.of(CHECKPOINT_DIR));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open checkpoint directory " + CHECKPOINT_DIR, e);
+        }
+    }
+
+    /**
+     * Rebuilds the chain tip and audit index at startup: restores the latest checkpoint
+     * (if any) and replays only the blocks stored after it, plus gaps below its tip
+     * that were filled in after it was written.
+     */
+    private static void restoreDerivedState() {
+        long start = System.nanoTime();
         try {
-            // Ensure directory exists
-            File dir = new File(BLOCKS_DIR);
-            if (!dir.exists()) {
-                dir.mkdirs();
+            ChainTip restored = checkpoints.loadLatest(auditIndex, committedRequests, blockLog);
+            long replayFrom = 0;
+            if (restored != null) {
+                chainTip.set(restored);
+                replayFrom = restored.getLatestBlockId() + 1;
+                gaps.addAll(checkpoints.getRestoredGaps());
             }
 
-            // Write block to JSON file
-            String fileName = String.format("block_%d.json", block.getId());
-            Path filePath = Path.of(BLOCKS_DIR, fileName);
+            // Without a full replay, the committed req_id set must already cover the checkpointed blocks
+            if (replayFrom > 0 && committedRequests.needsRebuild()) {
+                rebuildCommittedRequests(replayFrom - 1);
+            } else if (replayFrom == 0) {
+                committedRequests.clear();
+            }
+
+            int filled = 0;
+            for (long id : new ArrayList<>(gaps)) {
+                Block block = blockLog.read(id);
+                if (block != null) {
+                    apply(block, true);
+                    filled++;
+                }
+            }
 
-            String json = JsonFormat.printer().includingDefaultValueFields().print(block);
-            try (FileWriter writer = new FileWriter(filePath.toFile())) {
-                writer.write(json);
+            long latest = blockLog.highestBlockId();
+            for (long id = replayFrom; id <= latest; id++) {
+                Block block = blockLog.read(id);
+                if (block != null) {
+                    apply(block, true);
+                }
             }
 
-            System.out.println("✅ Block committed to disk: " + filePath);
-            return true;
+            System.out.println("📦 Chain state restored in " + (System.nanoTime() - start) / 1_000_000 + " ms: "
+                    + chainTip.get() + ", replayed " + Math.max(0, latest - replayFrom + 1) + " block(s) and "
+                    + filled + " filled gap(s)");
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to restore chain state", e);
+        }
+    }
+
+    private static void rebuildCommittedRequests(long throughBlockId) throws IOException {
+        long start = System.nanoTime();
+        committedRequests.clear();
+        for (long id = 0; id <= throughBlockId; id++) {
+            Block block = blockLog.read(id);
+            if (block != null) {
+                committedRequests.addBlock(block);
+            }
+        }
+        System.out.println("🧮 Rebuilt committed req_id set through block " + throughBlockId + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private static void apply(Block block, boolean newBlock) {
+        synchronized (applyLock) {
+            long latest = chainTip.get().getLatestBlockId();
+            if (block.getId() > latest + 1) {
+                for (long id = latest + 1; id < block.getId(); id++) {
+                    gaps.add(id);
+                }
+            } else {
+                gaps.remove(block.getId());
+            }
+            chainTip.updateAndGet(tip -> tip.advance(block, newBlock));
+            auditIndex.indexBlock(block);
+            try {
+                committedRequests.addBlock(block);
+            } catch (IOException e) {
+                // The block itself is durable; only duplicate detection for its audits is weakened
+                System.err.println("⚠️ Failed to record committed req_ids of block " + block.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static boolean saveBlock(Block block) {
+        try {
+            Block previous = blockLog.contains(block.getId()) ? blockLog.read(block.getId()) : null;
+            boolean newBlock = blockLog.append(block);
+            apply(block, newBlock);
+            blockSaves.incrementAndGet();
+            blockCache.put(block.getId(), block);
+            // Counted only once the new block is what readers see
+            if (previous != null && !previous.getHash().equals(block.getHash())) {
+                replacedBlocks.incrementAndGet();
+                for (LongConsumer listener : replacedBlockListeners) {
+                    listener.accept(block.getId());
+                }
+            }
+            System.out.println("✅ Block committed to disk: block_id = " + block.getId());
         } catch (Exception e) {
             System.err.println("❌ Failed to save block: " + e.getMessage());
             return false;
         }
+
+        maybeCheckpoint();
+        return true;
+    }
+
+    private static void maybeCheckpoint() {
+        long behind = chainTip.get().getLatestBlockId() - checkpoints.getLastCheckpointBlockId();
+        if (behind >= Config.CHECKPOINT_INTERVAL_BLOCKS && checkpointPending.compareAndSet(false, true)) {
+            checkpointExecutor.submit(() -> {
+                try {
+                    // Only the in-memory serialization blocks commits; the file is written after
+                    CheckpointManager.Snapshot snapshot;
+                    synchronized (applyLock) {
+                        snapshot = checkpoints.snapshot(chainTip.get(), gaps, auditIndex, committedRequests);
+                    }
+                    // The snapshot's filter must not know req_ids the exact set could still lose
+                    committedRequests.sync();
+                    checkpoints.write(snapshot);
+                } catch (Exception e) {
+                    System.err.println("❌ Failed to write checkpoint: " + e.getMessage());
+                } finally {
+                    checkpointPending.set(false);
+                }
+            });
+        }
     }
 
     public static boolean blockExists(long blockId) {
-        Path path = Path.of(BLOCKS_DIR, String.format("block_%d.json", blockId));
-        return Files.exists(path);
+        return blockLog.contains(blockId);
     }
 
     public static Block loadBlock(long blockId) throws Exception {
-        Path filePath = Path.of(BLOCKS_DIR, String.format("block_%d.json", blockId));
-        if (!filePath.toFile().exists()) {
-            throw new Exception("Block file not found");
+        Block block = blockCache.get(blockId);
+        if (block != null) {
+            return block;
         }
 
-        try (FileReader reader = new FileReader(filePath.toFile())) {
-            Block.Builder builder = Block.newBuilder();
-            JsonFormat.parser().ignoringUnknownFields().merge(reader, builder);
-            return builder.build();
+        long saves = blockSaves.get();
+        block = blockLog.read(blockId);
+        if (block == null) {
+            throw new Exception("Block not found in block log");
+        }
+        blockCache.put(blockId, block);
+        // A save since the read may have cached a newer block that this put just overwrote
+        if (blockSaves.get() != saves) {
+            blockCache.remove(blockId);
         }
+        return block;
     }
 
-    public static int getNextBlockId() {
-        File dir = new File(BLOCKS_DIR);
-        if (!dir.exists() || dir.listFiles() == null) return 0;
+    /** Reads a block straight from the block log without touching the block cache (for bulk scans). */
+    public static Block loadBlockUncached(long blockId) throws Exception {
+        Block block = blockLog.read(blockId);
+        if (block == null) {
+            throw new Exception("Block not found in block log");
+        }
+        return block;
+    }
 
-        return (int) Arrays.stream(dir.listFiles())
-                .filter(file -> file.getName().matches("block_\\d+\\.json"))
-                .count();
+    /**
+     * Returns the protobuf-encoded block as stored in the block log. For sealed
+     * segments the bytes are a view of the memory-mapped file, not a copy.
+     */
+    public static ByteString loadBlockBytes(long blockId) throws Exception {
+        ByteString bytes = blockLog.readBytes(blockId);
+        if (bytes == null) {
+            throw new Exception("Block not found in block log");
+        }
+        return bytes;
     }
 
-    public static String getLastBlockHash() {
-        File dir = new File(BLOCKS_DIR);
-        if (!dir.exists() || dir.listFiles() == null) return "genesis";
+    /**
+     * Whether an audit with this req_id has been committed on chain. Answered by the
+     * committed req_id Bloom filter, with a disk read only to confirm positives.
+     */
+    public static boolean isCommitted(String reqId) {
+        return committedRequests.contains(reqId);
+    }
 
-        File[] blockFiles = dir.listFiles((d, name) -> name.matches("block_\\d+\\.json"));
-        if (blockFiles == null || blockFiles.length == 0) return "genesis";
+    public static CommittedRequests getCommittedRequests() {
+        return committedRequests;
+    }
 
-        File latest = Arrays.stream(blockFiles)
-                .max(Comparator.comparingInt(file -> {
-                    String name = file.getName().replace("block_", "").replace(".json", "");
-                    return Integer.parseInt(name);
-                }))
-                .orElse(null);
+    public static IndexedAudit findAuditByReqId(String reqId) {
+        AuditIndex.AuditLocation location = auditIndex.findByReqId(reqId);
+        return location == null ? null : resolve(location, reqId, CommonProto.FileAudit::getReqId);
+    }
 
-        if (latest == null) return "genesis";
+    public static List<IndexedAudit> findAuditsByFileId(String fileId, int limit) {
+        return resolveAll(auditIndex.findByFileId(fileId), fileId, a -> a.getFileInfo().getFileId(), limit);
+    }
+
+    public static List<IndexedAudit> findAuditsByUserId(String userId, int limit) {
+        return resolveAll(auditIndex.findByUserId(userId), userId, a -> a.getUserInfo().getUserId(), limit);
+    }
 
-        try (FileReader reader = new FileReader(latest)) {
-            Block.Builder builder = Block.newBuilder();
-            JsonFormat.parser().ignoringUnknownFields().merge(reader, builder);
-            return builder.getHash();
+    private static List<IndexedAudit> resolveAll(List<AuditIndex.AuditLocation> locations, String key,
+                                                 Function<CommonProto.FileAudit, String> keyOf, int limit) {
+        List<IndexedAudit> results = new ArrayList<>();
+        for (AuditIndex.AuditLocation location : locations) {
+            if (results.size() >= limit) break;
+            IndexedAudit audit = resolve(location, key, keyOf);
+            if (audit != null) {
+                results.add(audit);
+            }
+        }
+        return results;
+    }
+
+    // Loads the audit an index entry points at, dropping entries that no longer match the key
+    private static IndexedAudit resolve(AuditIndex.AuditLocation location, String key,
+                                        Function<CommonProto.FileAudit, String> keyOf) {
+        try {
+            Block block = loadBlock(location.getBlockId());
+            if (location.getPosition() >= block.getAuditsCount()) {
+                return null;
+            }
+            CommonProto.FileAudit audit = block.getAudits(location.getPosition());
+            return key.equals(keyOf.apply(audit))
+                    ? new IndexedAudit(location.getBlockId(), location.getPosition(), audit)
+                    : null;
         } catch (Exception e) {
-            return "";
+            System.err.println("⚠️ Failed to resolve audit in block " + location.getBlockId() + ": " + e.getMessage());
+            return null;
         }
     }
 
+    /**
+     * How many stored blocks have been replaced by a block with a different hash since
+     * startup. Caches of data derived from stored blocks drop their entries when it changes.
+     */
+    public static long getReplacedBlockCount() {
+        return replacedBlocks.get();
+    }
+
+    /** Registers a callback that is given the id of every stored block replaced from now on. */
+    public static void addReplacedBlockListener(LongConsumer listener) {
+        replacedBlockListeners.add(listener);
+    }
+
+    public static LruCache<Long, Block> getBlockCache() {
+        return blockCache;
+    }
+
+    public static BlockLog getBlockLog() {
+        return blockLog;
+    }
+
+    public static ChainTip getChainTip() {
+        return chainTip.get();
+    }
+
+    public static int getNextBlockId() {
+        return chainTip.get().getNextBlockId();
+    }
+
+    public static String getLastBlockHash() {
+        return chainTip.get().getLatestHash();
+    }
+
     public static long getLatestBlockId() {
-        File dir = new File(BLOCKS_DIR);
-        if (!dir.exists() || dir.listFiles() == null) return -1;
-
-        File[] blockFiles = dir.listFiles((d, name) -> name.matches("block_\\d+\\.json"));
-        if (blockFiles == null || blockFiles.length == 0) return -1;
-
-        return Arrays.stream(blockFiles)
-                .mapToLong(file -> {
-                    try {
-                        String name = file.getName().replace("block_", "").replace(".json", "");
-                        return Long.parseLong(name);
-                    } catch (NumberFormatException e) {
-                        return -1;
-                    }
-                })
-                .max()
-                .orElse(-1);
+        return chainTip.get().getLatestBlockId();
+    }
+
+    public static void close() {
+        checkpointExecutor.shutdown();
+        blockLog.close();
     }
 
 }
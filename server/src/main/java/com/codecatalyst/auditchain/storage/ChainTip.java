@@ -0,0 +1,57 @@
+package com.codecatalyst.auditchain.storage;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+
+/**
+ * Immutable snapshot of the head of the local chain. BlockStorage swaps in a new
+ * instance on every save, so readers always see an id, hash and count that belong
+ * together without touching the disk.
+ */
+public final class ChainTip {
+
+    public static final ChainTip EMPTY = new ChainTip(-1, "genesis", 0);
+
+    private final long latestBlockId;
+    private final String latestHash;
+    private final int blockCount;
+
+    public ChainTip(long latestBlockId, String latestHash, int blockCount) {
+        this.latestBlockId = latestBlockId;
+        this.latestHash = latestHash;
+        this.blockCount = blockCount;
+    }
+
+    /**
+     * Returns the tip after saving the given block. A block below the current head
+     * (e.g. a gap filled in by recovery) only bumps the count; re-saving an id that
+     * was already stored leaves the count unchanged.
+     */
+    public ChainTip advance(Block block, boolean newBlock) {
+        int count = newBlock ? blockCount + 1 : blockCount;
+        if (block.getId() >= latestBlockId) {
+            return new ChainTip(block.getId(), block.getHash(), count);
+        }
+        return new ChainTip(latestBlockId, latestHash, count);
+    }
+
+    public long getLatestBlockId() {
+        return latestBlockId;
+    }
+
+    public String getLatestHash() {
+        return latestHash;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public int getNextBlockId() {
+        return blockCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ChainTip{id=" + latestBlockId + ", hash=" + latestHash + ", count=" + blockCount + "}";
+    }
+}
@@ -0,0 +1,203 @@
+package com.codecatalyst.auditchain.storage;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes and loads checkpoint snapshots of the state BlockStorage derives from the
+ * chain, so that startup restores it at block N and only replays blocks after N.
+ *
+ * A checkpoint file (checkpoint_N.bin) holds:
+ *   [magic][version][chain tip: id, hash, count][gap block ids below the tip]
+ *   [audit index snapshot][committed req_id Bloom filter][CRC32 of all preceding bytes]
+ * Version 1 files have no Bloom filter; they are still accepted, and BlockStorage
+ * then rebuilds the committed req_id set from the block log. Files before version 3
+ * have no gap list. Files are written to a temp name and atomically renamed; the
+ * newest RETAINED checkpoints are kept.
+ *
+ * Writing is split in two so that the chain is only blocked while the state is
+ * serialized in memory ({@link #snapshot}), not while the file is written and
+ * fsynced ({@link #write}).
+ */
+public class CheckpointManager {
+
+    private static final int MAGIC = 0x4143504B;    // "ACPK"
+    private static final int VERSION = 3;
+    private static final int RETAINED = 2;
+    private static final Pattern CHECKPOINT_NAME = Pattern.compile("checkpoint_(\\d+)\\.bin");
+
+    private final Path dir;
+    private volatile long lastCheckpointBlockId = -1;
+    private volatile List<Long> restoredGaps = List.of();
+
+    /** A checkpoint serialized in memory, checksum included, ready to be written out. */
+    public static final class Snapshot {
+        private final long blockId;
+        private final byte[] bytes;
+
+        private Snapshot(long blockId, byte[] bytes) {
+            this.blockId = blockId;
+            this.bytes = bytes;
+        }
+    }
+
+    public CheckpointManager(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    public long getLastCheckpointBlockId() {
+        return lastCheckpointBlockId;
+    }
+
+    /**
+     * Block ids below the tip of the checkpoint last loaded that had not been applied
+     * when it was written; any of them stored since must be replayed as well.
+     */
+    public List<Long> getRestoredGaps() {
+        return restoredGaps;
+    }
+
+    /**
+     * Restores the newest usable checkpoint into the given index and returns its chain
+     * tip, or null when there is none. A checkpoint is only usable if it is intact and
+     * the block log still holds its tip block with the same hash.
+     */
+    public ChainTip loadLatest(AuditIndex index, CommittedRequests committed, BlockLog blockLog) throws IOException {
+        List<Path> checkpoints = listCheckpoints();
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Path file = checkpoints.get(i);
+            try {
+                List<Long> gaps = new ArrayList<>();
+                ChainTip tip = read(file, gaps, index, committed);
+                Block tipBlock = blockLog.read(tip.getLatestBlockId());
+                if (tipBlock == null || !tipBlock.getHash().equals(tip.getLatestHash())) {
+                    throw new IOException("tip block " + tip.getLatestBlockId() + " does not match the block log");
+                }
+                lastCheckpointBlockId = tip.getLatestBlockId();
+                restoredGaps = gaps;
+                System.out.println("📸 Loaded checkpoint " + file.getFileName() + ": " + tip);
+                return tip;
+            } catch (IOException e) {
+                System.err.println("⚠️ Skipping checkpoint " + file.getFileName() + ": " + e.getMessage());
+                index.clear();
+                committed.resetFilter();
+            }
+        }
+        return null;
+    }
+
+    private ChainTip read(Path file, List<Long> gaps, AuditIndex index, CommittedRequests committed) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file))) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a checkpoint file");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("unsupported checkpoint version " + version);
+            }
+            ChainTip tip = new ChainTip(in.readLong(), in.readUTF(), in.readInt());
+            if (version >= 3) {
+                int gapCount = in.readInt();
+                for (int i = 0; i < gapCount; i++) {
+                    gaps.add(in.readLong());
+                }
+            }
+            index.restore(in);
+            if (version >= 2) {
+                committed.restoreFilter(in);
+            }
+
+            long expected = checked.getChecksum().getValue();
+            if (new DataInputStream(raw).readLong() != expected) {
+                throw new IOException("checksum mismatch");
+            }
+            return tip;
+        }
+    }
+
+    /**
+     * Serializes the given tip, gap ids, index and committed req_id filter in memory.
+     * The caller must make sure no block is applied to any of them while this runs, so
+     * that all describe the same block.
+     */
+    public Snapshot snapshot(ChainTip tip, Collection<Long> gaps, AuditIndex index, CommittedRequests committed)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        CheckedOutputStream checked = new CheckedOutputStream(bytes, new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(tip.getLatestBlockId());
+        out.writeUTF(tip.getLatestHash());
+        out.writeInt(tip.getBlockCount());
+        out.writeInt(gaps.size());
+        for (long gap : gaps) {
+            out.writeLong(gap);
+        }
+        index.writeTo(out);
+        committed.writeFilterTo(out);
+        out.flush();
+
+        new DataOutputStream(bytes).writeLong(checked.getChecksum().getValue());
+        return new Snapshot(tip.getLatestBlockId(), bytes.toByteArray());
+    }
+
+    /** Writes a snapshot to disk; needs no lock on the chain state. */
+    public void write(Snapshot snapshot) throws IOException {
+        long start = System.nanoTime();
+        Path target = dir.resolve("checkpoint_" + snapshot.blockId + ".bin");
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            file.write(snapshot.bytes);
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastCheckpointBlockId = snapshot.blockId;
+
+        List<Path> checkpoints = listCheckpoints();
+        for (int i = 0; i < checkpoints.size() - RETAINED; i++) {
+            Files.deleteIfExists(checkpoints.get(i));
+        }
+
+        System.out.println("📸 Checkpoint written at block " + snapshot.blockId + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // Oldest first
+    private List<Path> listCheckpoints() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> CHECKPOINT_NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted((a, b) -> Long.compare(blockIdOf(a), blockIdOf(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long blockIdOf(Path file) {
+        Matcher m = CHECKPOINT_NAME.matcher(file.getFileName().toString());
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+}
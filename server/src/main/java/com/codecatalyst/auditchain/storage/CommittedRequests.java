@@ -0,0 +1,312 @@
+package com.codecatalyst.auditchain.storage;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.util.BloomFilter;
+import com.codecatalyst.auditchain.util.LruCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The set of every committed req_id, used to keep audits that are already on chain
+ * out of the mempool without scanning the chain.
+ *
+ * A Bloom filter in memory answers every lookup for a req_id that was never
+ * committed without touching the disk. A positive is confirmed against the exact set:
+ * req_ids are hashed into BUCKETS append-only files of writeUTF records
+ * (dir/ab/abcd.ids), so a confirmation reads one small file. Recently confirmed
+ * req_ids are cached, since a retrying client asks about the same one repeatedly.
+ * Memory stays bounded by the filter size however long the chain grows.
+ *
+ * Committing a block only appends its req_ids to one journal file (dir/journal-N.ids)
+ * and an in-memory set. Every JOURNAL_FLUSH_ENTRIES req_ids the journal is rotated and
+ * a background thread sorts its req_ids into the bucket files, one open per bucket;
+ * journals left over from a previous run are folded in on startup.
+ *
+ * The filter is saved with every checkpoint and restored from it, so every req_id it
+ * holds must be on disk first: {@link #sync} forces the journals and the bucket files
+ * written since the last checkpoint before one is written. A flushed journal is only
+ * deleted once its buckets have been forced. Req_ids of blocks after the checkpoint
+ * need no sync, since startup re-adds them.
+ */
+public class CommittedRequests {
+
+    private static final int BUCKETS = 1 << 16;
+    private static final int CONFIRMED_CACHE_CAPACITY = 10_000;
+    private static final int JOURNAL_FLUSH_ENTRIES = 50_000;
+    private static final String JOURNAL_PREFIX = "journal-";
+
+    private final Path dir;
+    private final long expectedEntries;
+    private final double falsePositiveRate;
+    private final boolean freshSet;
+    private volatile BloomFilter filter;
+    private volatile boolean filterRestored;
+    private final LruCache<String, Boolean> confirmed = new LruCache<>(CONFIRMED_CACHE_CAPACITY);
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong diskLookups = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    // Journal state is only touched by addBlock (whose callers serialize) and clear
+    private DataOutputStream journal;
+    private Path journalFile;
+    private long journalSeq;
+    private List<String> journaled = new ArrayList<>();
+    // Req_ids written to a journal but not yet to their bucket files
+    private final Set<String> unflushed = ConcurrentHashMap.newKeySet();
+    // Held while bucket files are written, forced or deleted
+    private final Object bucketLock = new Object();
+    // Bucket files appended to since they were last forced, and flushed journals waiting on them
+    private final Set<Path> dirtyBuckets = new HashSet<>();
+    private final List<Path> flushedJournals = new ArrayList<>();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "committed-ids-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CommittedRequests(Path dir, long expectedEntries, double falsePositiveRate) throws IOException {
+        this.dir = dir;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.freshSet = !Files.isDirectory(dir);
+        Files.createDirectories(dir);
+        this.filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        foldLeftoverJournals();
+        openJournal();
+    }
+
+    // Moves req_ids journaled by a previous run, but never flushed, into the bucket files
+    private void foldLeftoverJournals() throws IOException {
+        List<Path> journals = listJournals();
+        for (Path file : journals) {
+            List<String> reqIds = new ArrayList<>();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    reqIds.add(in.readUTF());
+                }
+            } catch (EOFException e) {
+                // End of journal, possibly a torn last record
+            }
+            writeBuckets(reqIds);
+            String name = file.getFileName().toString();
+            journalSeq = Math.max(journalSeq, Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - 4)) + 1);
+        }
+        synchronized (bucketLock) {
+            flushedJournals.addAll(journals);
+        }
+        sync();
+    }
+
+    private List<Path> listJournals() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(JOURNAL_PREFIX)).collect(Collectors.toList());
+        }
+    }
+
+    private void openJournal() throws IOException {
+        journalFile = dir.resolve(JOURNAL_PREFIX + journalSeq++ + ".ids");
+        journal = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(journalFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        journaled = new ArrayList<>();
+    }
+
+    /**
+     * True when the set cannot be trusted to cover the chain up to the restored
+     * checkpoint: the on-disk set was just created, or the checkpoint had no filter.
+     */
+    public boolean needsRebuild() {
+        return freshSet || !filterRestored;
+    }
+
+    /** Records every req_id of a committed block. Callers serialize calls to this method. */
+    public void addBlock(Block block) throws IOException {
+        for (CommonProto.FileAudit audit : block.getAuditsList()) {
+            String reqId = audit.getReqId();
+            filter.add(reqId);
+            unflushed.add(reqId);
+            journal.writeUTF(reqId);
+            journaled.add(reqId);
+        }
+        journal.flush();
+        added.addAndGet(block.getAuditsCount());
+
+        if (journaled.size() >= JOURNAL_FLUSH_ENTRIES) {
+            journal.close();
+            Path full = journalFile;
+            List<String> reqIds = journaled;
+            openJournal();
+            flusher.submit(() -> flush(full, reqIds));
+        }
+    }
+
+    private void flush(Path journalFile, List<String> reqIds) {
+        try {
+            synchronized (bucketLock) {
+                writeBuckets(reqIds);
+                // Deleted by the next sync, once the buckets it went into are on disk
+                flushedJournals.add(journalFile);
+            }
+            unflushed.removeAll(reqIds);
+        } catch (IOException e) {
+            // The journal stays on disk and is folded in on the next startup
+            System.err.println("⚠️ Failed to flush committed req_id journal " + journalFile + ": " + e.getMessage());
+        }
+    }
+
+    // Appends req_ids to their bucket files, opening each bucket once
+    private void writeBuckets(List<String> reqIds) throws IOException {
+        Map<Path, List<String>> byBucket = new HashMap<>();
+        for (String reqId : reqIds) {
+            byBucket.computeIfAbsent(bucketFile(reqId), b -> new ArrayList<>()).add(reqId);
+        }
+        synchronized (bucketLock) {
+            for (Map.Entry<Path, List<String>> entry : byBucket.entrySet()) {
+                Path bucket = entry.getKey();
+                Files.createDirectories(bucket.getParent());
+                dirtyBuckets.add(bucket);
+                try (OutputStream file = Files.newOutputStream(bucket, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                    for (String reqId : entry.getValue()) {
+                        out.writeUTF(reqId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces every journal and every bucket file written since the last sync to disk, then
+     * deletes the journals already sorted into buckets. Called before a checkpoint (which
+     * holds the filter) is written, so every req_id the filter knows is durable.
+     */
+    public void sync() throws IOException {
+        synchronized (bucketLock) {
+            for (Path journal : listJournals()) {
+                force(journal);
+            }
+            for (Path bucket : dirtyBuckets) {
+                force(bucket);
+            }
+            dirtyBuckets.clear();
+            for (Path journal : flushedJournals) {
+                Files.deleteIfExists(journal);
+            }
+            flushedJournals.clear();
+        }
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        } catch (NoSuchFileException e) {
+            // Deleted since it was listed; nothing left to force
+        }
+    }
+
+    /** Whether an audit with this req_id has been committed. */
+    public boolean contains(String reqId) {
+        if (!filter.mightContain(reqId)) {
+            return false;
+        }
+        if (confirmed.get(reqId) != null || unflushed.contains(reqId)) {
+            return true;
+        }
+
+        diskLookups.incrementAndGet();
+        try (InputStream file = Files.newInputStream(bucketFile(reqId));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            while (true) {
+                if (reqId.equals(in.readUTF())) {
+                    confirmed.put(reqId, Boolean.TRUE);
+                    return true;
+                }
+            }
+        } catch (EOFException | NoSuchFileException e) {
+            // End of bucket (possibly a record still being appended): not committed
+        } catch (IOException e) {
+            System.err.println("⚠️ Failed to read committed req_id set: " + e.getMessage());
+        }
+        falsePositives.incrementAndGet();
+        return false;
+    }
+
+    private Path bucketFile(String reqId) {
+        String name = String.format("%04x", (int) (BloomFilter.hash64(reqId) >>> 48) & (BUCKETS - 1));
+        return dir.resolve(name.substring(0, 2)).resolve(name + ".ids");
+    }
+
+    /** Empties the filter and the on-disk set, ahead of a rebuild from the block log. */
+    public void clear() throws IOException {
+        filter.clear();
+        confirmed.clear();
+        added.set(0);
+        journal.close();
+        synchronized (bucketLock) {
+            unflushed.clear();
+            dirtyBuckets.clear();
+            flushedJournals.clear();
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    if (!file.equals(dir)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+        openJournal();
+    }
+
+    void writeFilterTo(DataOutputStream out) throws IOException {
+        filter.writeTo(out);
+    }
+
+    void restoreFilter(DataInputStream in) throws IOException {
+        filter = BloomFilter.readFrom(in);
+        filterRestored = true;
+    }
+
+    // A checkpoint that turned out to be unusable may already have replaced the filter
+    void resetFilter() {
+        filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        filterRestored = false;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("added_since_start", added.get());
+        stats.put("unflushed", unflushed.size());
+        stats.put("filter_bits", filter.bitCount());
+        stats.put("filter_hashes", filter.hashCount());
+        stats.put("disk_lookups", diskLookups.get());
+        stats.put("false_positives", falsePositives.get());
+        stats.put("confirmed_cache", confirmed.stats());
+        return stats;
+    }
+}
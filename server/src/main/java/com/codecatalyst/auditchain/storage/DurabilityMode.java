@@ -0,0 +1,11 @@
+package com.codecatalyst.auditchain.storage;
+
+/** How hard BlockLog works to get an appended block onto stable storage before returning. */
+public enum DurabilityMode {
+    /** Leave flushing to the OS page cache; a crash may lose recently committed blocks. */
+    NONE,
+    /** fsync the segment after every block. */
+    FSYNC_PER_BLOCK,
+    /** Concurrent appends wait for a shared fsync issued at most once per group-commit window. */
+    GROUP_COMMIT
+}
@@ -0,0 +1,97 @@
+package com.codecatalyst.auditchain.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Batches fsyncs for BlockLog. Appenders register the sequence number of their write
+ * and block until a background thread has forced the segment past it. The flusher
+ * waits up to the commit window after the first pending write so that concurrent
+ * commits (gRPC CommitBlock, the leader's own save, recovery sync) share one fsync.
+ */
+class GroupCommitter {
+
+    private final long windowNanos;
+    private final Object lock = new Object();
+    private long requestedSeq;
+    private long durableSeq;
+    private long failedThroughSeq;
+    private IOException failure;
+    private FileChannel pendingChannel;
+
+    GroupCommitter(long windowMillis) {
+        this.windowNanos = windowMillis * 1_000_000L;
+        Thread flusher = new Thread(this::run, "block-log-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** Called by BlockLog under its own lock right after a record has been written. */
+    void written(long seq, FileChannel channel) {
+        synchronized (lock) {
+            requestedSeq = seq;
+            pendingChannel = channel;
+            lock.notifyAll();
+        }
+    }
+
+    /** Blocks until the write with the given sequence number has been fsynced. */
+    void awaitDurable(long seq) throws IOException {
+        synchronized (lock) {
+            while (durableSeq < seq) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for group commit", e);
+                }
+            }
+            if (failure != null && seq <= failedThroughSeq) {
+                throw new IOException("Group commit fsync failed", failure);
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (lock) {
+                while (requestedSeq == durableSeq) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+            if (windowNanos > 0) {
+                LockSupport.parkNanos(windowNanos);
+            }
+
+            long target;
+            FileChannel channel;
+            synchronized (lock) {
+                target = requestedSeq;
+                channel = pendingChannel;
+            }
+
+            IOException error = null;
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+                System.err.println("❌ Group commit fsync failed: " + e.getMessage());
+            }
+
+            synchronized (lock) {
+                if (error != null) {
+                    failure = error;
+                    failedThroughSeq = target;
+                }
+                durableSeq = target;
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.codecatalyst.auditchain.storage;
+
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+/** A committed audit together with the block and position it was committed at. */
+public final class IndexedAudit {
+    private final long blockId;
+    private final int position;
+    private final CommonProto.FileAudit audit;
+
+    public IndexedAudit(long blockId, int position, CommonProto.FileAudit audit) {
+        this.blockId = blockId;
+        this.position = position;
+        this.audit = audit;
+    }
+
+    public long getBlockId() {
+        return blockId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public CommonProto.FileAudit getAudit() {
+        return audit;
+    }
+}
@@ -0,0 +1,75 @@
+package com.codecatalyst.auditchain.storage;
+
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * One-shot migration of the legacy one-JSON-file-per-block directory into the
+ * binary {@link BlockLog}. Blocks are appended in id order; once every file has been
+ * copied the JSON directory is renamed to "blocks.migrated" so the migration never
+ * runs twice. A partially migrated directory is safe to re-run because blocks the
+ * log already holds are skipped.
+ *
+ * Blocks are appended without per-block fsyncs (DurabilityMode.NONE) and the log is
+ * forced once before the JSON directory is renamed; the log's own durability mode is
+ * restored afterwards.
+ */
+public class JsonBlockMigrator {
+
+    private static final Pattern BLOCK_FILE = Pattern.compile("block_(\\d+)\\.json");
+
+    public static int migrateIfPresent(Path jsonDir, BlockLog log) throws IOException {
+        if (!Files.isDirectory(jsonDir)) {
+            return 0;
+        }
+
+        List<Path> blockFiles;
+        try (Stream<Path> files = Files.list(jsonDir)) {
+            blockFiles = files.filter(p -> BLOCK_FILE.matcher(p.getFileName().toString()).matches())
+                    .sorted((a, b) -> Long.compare(blockNumber(a), blockNumber(b)))
+                    .collect(Collectors.toList());
+        }
+
+        System.out.println("🚚 Migrating " + blockFiles.size() + " JSON block file(s) from " + jsonDir + " into the block log...");
+
+        int migrated = 0;
+        DurabilityMode mode = log.getDurabilityMode();
+        log.setDurabilityMode(DurabilityMode.NONE);
+        try {
+            for (Path file : blockFiles) {
+                if (log.contains(blockNumber(file))) {
+                    continue;
+                }
+                try (Reader reader = Files.newBufferedReader(file)) {
+                    Block.Builder builder = Block.newBuilder();
+                    JsonFormat.parser().ignoringUnknownFields().merge(reader, builder);
+                    log.append(builder.build());
+                    migrated++;
+                }
+            }
+            log.force();
+        } finally {
+            log.setDurabilityMode(mode);
+        }
+
+        Path done = jsonDir.resolveSibling(jsonDir.getFileName() + ".migrated");
+        Files.move(jsonDir, done);
+        System.out.println("✅ Migrated " + migrated + " block(s); legacy JSON moved to " + done);
+        return migrated;
+    }
+
+    private static long blockNumber(Path file) {
+        Matcher m = BLOCK_FILE.matcher(file.getFileName().toString());
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+}
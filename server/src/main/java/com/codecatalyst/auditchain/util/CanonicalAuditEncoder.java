@@ -0,0 +1,184 @@
+package com.codecatalyst.auditchain.util;
+
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * The canonical JSON form of an audit: the bytes clients sign and the chain hashes.
+ *
+ * Byte for byte what Go's json.Marshal produces for the audit with sorted keys:
+ * {"access_type":3,"file_info":{"file_id":"f004","file_name":"config.json"},"req_id":"...",
+ * "timestamp":1747105079,"user_info":{"user_id":"u003","user_name":"charlie"}}
+ * Strings are escaped like Go does: quote, backslash, \b, \f, \n, \r and \t get short escapes;
+ * other control characters, <, >, &, U+2028 and U+2029 get six-character unicode escapes
+ * with lowercase hex digits.
+ *
+ * The encoding is written into a per-thread buffer, so encoding never contends across
+ * threads; {@link #update} hands that buffer straight to a digest without copying it.
+ */
+public final class CanonicalAuditEncoder {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] ACCESS_TYPE = ascii("{\"access_type\":");
+    private static final byte[] FILE_ID = ascii(",\"file_info\":{\"file_id\":");
+    private static final byte[] FILE_NAME = ascii(",\"file_name\":");
+    private static final byte[] REQ_ID = ascii("},\"req_id\":");
+    private static final byte[] TIMESTAMP = ascii(",\"timestamp\":");
+    private static final byte[] USER_ID = ascii(",\"user_info\":{\"user_id\":");
+    private static final byte[] USER_NAME = ascii(",\"user_name\":");
+    private static final byte[] END = ascii("}}");
+
+    private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    private CanonicalAuditEncoder() {
+    }
+
+    /** The canonical encoding of the audit, as a new array. */
+    public static byte[] encode(CommonProto.FileAudit audit) {
+        Buffer out = write(audit);
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    /** Feeds the canonical encoding of the audit to a digest. */
+    public static void update(MessageDigest digest, CommonProto.FileAudit audit) {
+        Buffer out = write(audit);
+        digest.update(out.bytes, 0, out.size);
+    }
+
+    public static String encodeToString(CommonProto.FileAudit audit) {
+        return new String(encode(audit), StandardCharsets.UTF_8);
+    }
+
+    private static Buffer write(CommonProto.FileAudit audit) {
+        Buffer out = buffers.get();
+        out.size = 0;
+        out.write(ACCESS_TYPE);
+        out.number(audit.getAccessType().getNumber());
+        out.write(FILE_ID);
+        out.string(audit.getFileInfo().getFileId());
+        out.write(FILE_NAME);
+        out.string(audit.getFileInfo().getFileName());
+        out.write(REQ_ID);
+        out.string(audit.getReqId());
+        out.write(TIMESTAMP);
+        out.number(audit.getTimestamp());
+        out.write(USER_ID);
+        out.string(audit.getUserInfo().getUserId());
+        out.write(USER_NAME);
+        out.string(audit.getUserInfo().getUserName());
+        out.write(END);
+        return out;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Buffer {
+        byte[] bytes = new byte[512];
+        int size;
+
+        void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void write(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        void number(long value) {
+            ensure(20);
+            if (value == 0) {
+                bytes[size++] = '0';
+                return;
+            }
+            // Digits are produced from the negative value so Long.MIN_VALUE needs no special case
+            long v = value < 0 ? value : -value;
+            if (value < 0) {
+                bytes[size++] = '-';
+            }
+            int start = size;
+            while (v != 0) {
+                bytes[size++] = (byte) ('0' - v % 10);
+                v /= 10;
+            }
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte t = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = t;
+            }
+        }
+
+        void string(String s) {
+            // Worst case is a six-byte unicode escape per char
+            ensure(s.length() * 6 + 2);
+            bytes[size++] = '"';
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    switch (c) {
+                        case '"': escape('"'); break;
+                        case '\\': escape('\\'); break;
+                        case '\b': escape('b'); break;
+                        case '\f': escape('f'); break;
+                        case '\n': escape('n'); break;
+                        case '\r': escape('r'); break;
+                        case '\t': escape('t'); break;
+                        case '<':
+                        case '>':
+                        case '&':
+                            unicode(c);
+                            break;
+                        default:
+                            if (c < 0x20) {
+                                unicode(c);
+                            } else {
+                                bytes[size++] = (byte) c;
+                            }
+                    }
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xc0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3f));
+                } else if (c == 0x2028 || c == 0x2029) {
+                    unicode(c);
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    bytes[size++] = (byte) (0xf0 | (cp >> 18));
+                    bytes[size++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate: String.getBytes(UTF_8) wrote '?', keep doing the same
+                    bytes[size++] = '?';
+                } else {
+                    bytes[size++] = (byte) (0xe0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            bytes[size++] = '"';
+        }
+
+        private void escape(char c) {
+            bytes[size++] = '\\';
+            bytes[size++] = (byte) c;
+        }
+
+        private void unicode(char c) {
+            bytes[size++] = '\\';
+            bytes[size++] = 'u';
+            bytes[size++] = HEX[(c >> 12) & 0xf];
+            bytes[size++] = HEX[(c >> 8) & 0xf];
+            bytes[size++] = HEX[(c >> 4) & 0xf];
+            bytes[size++] = HEX[c & 0xf];
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.codecatalyst.auditchain.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded, thread-safe cache for hot concurrent paths, with the same counters as
+ * {@link LruCache}. Lookups are a ConcurrentHashMap read and never take a lock.
+ *
+ * Eviction approximates LRU with the CLOCK (second-chance) policy: a lookup marks its
+ * entry as used, and once the cache is over capacity the writer that noticed sweeps
+ * the entries, unmarking used ones and evicting the rest. New entries start out
+ * marked. While a sweep runs the size may briefly exceed the capacity.
+ */
+public class ConcurrentLruCache<K, V> {
+
+    private static final class Entry<V> {
+        final V value;
+        volatile boolean used = true;
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+
+    private final int capacity;
+    private final ConcurrentHashMap<K, Entry<V>> entries;
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    // The clock hand, where the last sweep stopped; guarded by sweepLock
+    private Iterator<Map.Entry<K, Entry<V>>> hand;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ConcurrentLruCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (!entry.used) {
+            entry.used = true;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        entries.put(key, new Entry<>(value));
+        if (entries.size() > capacity) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        // One sweeper at a time; other writers go on, the running sweep covers their entries too
+        if (!sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            // Two turns of the clock at most: the first may only have unmarked entries
+            long steps = 2L * entries.size();
+            while (entries.size() > capacity && steps-- > 0) {
+                if (hand == null || !hand.hasNext()) {
+                    hand = entries.entrySet().iterator();
+                    if (!hand.hasNext()) {
+                        break;
+                    }
+                }
+                Map.Entry<K, Entry<V>> next = hand.next();
+                Entry<V> entry = next.getValue();
+                if (entry.used) {
+                    entry.used = false;
+                } else if (entries.remove(next.getKey(), entry)) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+    }
+
+    /** Snapshot of the counters, suitable for JSON status endpoints. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("capacity", capacity);
+        stats.put("hits", hits());
+        stats.put("misses", misses());
+        stats.put("evictions", evictions());
+        stats.put("hit_rate", hitRate());
+        return stats;
+    }
+}
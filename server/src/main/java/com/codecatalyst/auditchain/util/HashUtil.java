@@ -2,39 +2,75 @@ package com.codecatalyst.auditchain.util;
 
 import com.codecatalyst.auditchain.proto.common.CommonProto;
 
-import java.security.MessageDigest;
-import java.util.Base64;
-import java.util.List;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
-import static com.codecatalyst.auditchain.grpc.SignatureVerifier.getAuditInJsonFormat;
-
 public class HashUtil {
 
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<byte[]> headerBuffers = ThreadLocal.withInitial(() -> new byte[256]);
+
+    /**
+     * SHA-256 over blockId + prevHash + merkleRoot followed by every audit's canonical JSON,
+     * as lowercase hex. This must match Python's get_audit_json(audit) based hash.
+     *
+     * The parts are fed to the digest one at a time (each audit's encoding straight from the
+     * encoder's buffer), rather than concatenated into one string first; the hashed bytes are the same.
+     */
     public static String computeBlockHash(int blockId, String prevHash, List<CommonProto.FileAudit> audits, String merkleRoot) {
         try {
-            StringBuilder sb = new StringBuilder();
-            sb.append(blockId).append(prevHash).append(merkleRoot);
+            MessageDigest digest = sha256.get();
+            digest.reset();
+            updateHeader(digest, blockId, prevHash, merkleRoot);
 
             for (CommonProto.FileAudit audit : audits) {
-                sb.append(getAuditInJsonFormat(audit));  // This must match Python's get_audit_json(audit)
-            }
-
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
-
-            // Convert to hex string (like Python’s hexdigest)
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                hexString.append(String.format("%02x", b));
+                CanonicalAuditEncoder.update(digest, audit);
             }
 
-            return hexString.toString();  // hex string like Python’s hashlib.sha256().hexdigest()
+            return Hex.encode(digest.digest());  // hex string like Python’s hashlib.sha256().hexdigest()
 
         } catch (Exception e) {
             return "";
         }
     }
+
+    private static void updateHeader(MessageDigest digest, int blockId, String prevHash, String merkleRoot) {
+        byte[] buffer = headerBuffers.get();
+        int length = 0;
+        String id = Integer.toString(blockId);
+        if (id.length() + prevHash.length() + merkleRoot.length() <= buffer.length) {
+            length = putAscii(id, buffer, length);
+            length = length < 0 ? length : putAscii(prevHash, buffer, length);
+            length = length < 0 ? length : putAscii(merkleRoot, buffer, length);
+        } else {
+            length = -1;
+        }
+
+        if (length >= 0) {
+            digest.update(buffer, 0, length);
+        } else {
+            // Non-ASCII or oversized hashes from a peer: encode the joined string, as before
+            digest.update((id + prevHash + merkleRoot).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // Copies an ASCII string into the buffer and returns the new length, or -1 if it is not ASCII
+    private static int putAscii(String s, byte[] buffer, int offset) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                return -1;
+            }
+            buffer[offset + i] = (byte) c;
+        }
+        return offset + s.length();
+    }
 }
@@ -0,0 +1,43 @@
+package com.codecatalyst.auditchain.util;
+
+import java.nio.charset.StandardCharsets;
+
+/** Table-based lowercase hex encoding, as used for every hash on the chain. */
+public final class Hex {
+
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private Hex() {
+    }
+
+    /** Writes the lowercase hex ASCII of src into dst at offset (2 bytes per input byte). */
+    public static void encodeTo(byte[] src, byte[] dst, int offset) {
+        for (int i = 0; i < src.length; i++) {
+            int b = src[i] & 0xff;
+            dst[offset + 2 * i] = DIGITS[b >>> 4];
+            dst[offset + 2 * i + 1] = DIGITS[b & 0xf];
+        }
+    }
+
+    public static String encode(byte[] src) {
+        byte[] ascii = new byte[src.length * 2];
+        encodeTo(src, ascii, 0);
+        return new String(ascii, StandardCharsets.US_ASCII);
+    }
+
+    public static byte[] decode(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd-length hex string");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Invalid hex string");
+            }
+            bytes[i] = (byte) ((hi << 4) | lo);
+        }
+        return bytes;
+    }
+}
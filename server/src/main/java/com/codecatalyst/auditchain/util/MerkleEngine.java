@@ -0,0 +1,148 @@
+package com.codecatalyst.auditchain.util;
+
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Merkle roots and inclusion proofs over a block's audits, on raw 32-byte hashes.
+ *
+ * The tree is the one the chain has always used: a leaf is SHA-256 of the audit's
+ * canonical JSON, a parent is SHA-256 of the lowercase hex of the left child followed
+ * by the hex of the right child, and the last node of an odd level is paired with
+ * itself. Nodes stay byte arrays; hex is only produced into a per-thread 128-byte
+ * buffer to feed the parent hash, so roots are identical to the old string-based code.
+ */
+public final class MerkleEngine {
+
+    public static final int HASH_BYTES = 32;
+
+    // Blocks with at least this many audits hash their leaves in parallel
+    private static final int PARALLEL_LEAF_THRESHOLD = 256;
+
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<byte[]> pairBuffers = ThreadLocal.withInitial(() -> new byte[4 * HASH_BYTES]);
+
+    private MerkleEngine() {
+    }
+
+    public static byte[] leafHash(CommonProto.FileAudit audit) {
+        MessageDigest digest = sha256.get();
+        CanonicalAuditEncoder.update(digest, audit);
+        return digest.digest();
+    }
+
+    public static byte[][] leafHashes(List<CommonProto.FileAudit> audits) {
+        byte[][] leaves = new byte[audits.size()][];
+        IntStream indexes = IntStream.range(0, leaves.length);
+        if (leaves.length >= PARALLEL_LEAF_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> leaves[i] = leafHash(audits.get(i)));
+        return leaves;
+    }
+
+    static byte[] parent(byte[] left, byte[] right) {
+        byte[] pair = pairBuffers.get();
+        Hex.encodeTo(left, pair, 0);
+        Hex.encodeTo(right, pair, 2 * HASH_BYTES);
+        return sha256.get().digest(pair);
+    }
+
+    /** The root of the given leaf hashes, or null when there are none. */
+    public static byte[] root(byte[][] leaves) {
+        if (leaves.length == 0) {
+            return null;
+        }
+        byte[][] level = leaves.clone();
+        int width = level.length;
+        while (width > 1) {
+            int next = 0;
+            for (int i = 0; i < width; i += 2) {
+                byte[] left = level[i];
+                byte[] right = i + 1 < width ? level[i + 1] : left;
+                level[next++] = parent(left, right);
+            }
+            width = next;
+        }
+        return level[0];
+    }
+
+    /** The hex Merkle root of the audits, or "" for none (what MerkleUtil has always returned). */
+    public static String rootHex(List<CommonProto.FileAudit> audits) {
+        return rootHex(leafHashes(audits));
+    }
+
+    /** The hex Merkle root over precomputed leaf hashes, or "" for none. */
+    public static String rootHex(byte[][] leaves) {
+        byte[] root = root(leaves);
+        return root == null ? "" : Hex.encode(root);
+    }
+
+    /**
+     * Every level of the tree, leaves first and the root last, so any number of proofs
+     * can be read off it without rehashing.
+     */
+    public static byte[][][] tree(byte[][] leaves) {
+        if (leaves.length == 0) {
+            throw new IllegalArgumentException("No leaves");
+        }
+        List<byte[][]> levels = new ArrayList<>();
+        byte[][] level = leaves.clone();
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < level.length; i += 2) {
+                byte[] left = level[i];
+                byte[] right = i + 1 < level.length ? level[i + 1] : left;
+                next[i / 2] = parent(left, right);
+            }
+            levels.add(next);
+            level = next;
+        }
+        return levels.toArray(new byte[0][][]);
+    }
+
+    /** The sibling hashes from the leaf at index up to (excluding) the root. */
+    public static List<byte[]> proof(byte[][] leaves, int index) {
+        if (index < 0 || index >= leaves.length) {
+            throw new IndexOutOfBoundsException("Leaf " + index + " of " + leaves.length);
+        }
+        return proof(tree(leaves), index);
+    }
+
+    /** The same proof, read off a tree built by {@link #tree}. */
+    public static List<byte[]> proof(byte[][][] tree, int index) {
+        if (index < 0 || index >= tree[0].length) {
+            throw new IndexOutOfBoundsException("Leaf " + index + " of " + tree[0].length);
+        }
+        List<byte[]> siblings = new ArrayList<>(tree.length - 1);
+        for (int depth = 0; depth < tree.length - 1; depth++) {
+            byte[][] level = tree[depth];
+            int sibling = index ^ 1;
+            siblings.add(sibling < level.length ? level[sibling] : level[index]);
+            index >>= 1;
+        }
+        return siblings;
+    }
+
+    /** Recomputes the root from a leaf, its index in the block and its proof. */
+    public static byte[] rootFromProof(byte[] leaf, int index, List<byte[]> siblings) {
+        byte[] node = leaf;
+        for (byte[] sibling : siblings) {
+            node = (index & 1) == 0 ? parent(node, sibling) : parent(sibling, node);
+            index >>= 1;
+        }
+        return node;
+    }
+}
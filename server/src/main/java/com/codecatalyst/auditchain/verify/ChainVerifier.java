@@ -0,0 +1,348 @@
+package com.codecatalyst.auditchain.verify;
+
+import com.codecatalyst.auditchain.config.Config;
+import com.codecatalyst.auditchain.grpc.SignatureVerifier;
+import com.codecatalyst.auditchain.proto.blockchain.BlockChainProto.Block;
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import com.codecatalyst.auditchain.storage.BlockStorage;
+import com.codecatalyst.auditchain.util.HashUtil;
+import com.codecatalyst.auditchain.util.MerkleUtil;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background re-validation of the stored chain.
+ *
+ * For every block it recomputes the Merkle root and block hash, checks the
+ * previous_hash link to the block before it and re-verifies every audit signature.
+ * New blocks are split into ranges and checked on a small, low-priority fork-join
+ * pool that pauses between ranges so commits and votes keep the CPU. A persisted
+ * watermark records how far the chain has been verified, so each run only checks
+ * the blocks committed since the previous one.
+ *
+ * Blocks that were missing when their range was verified, and blocks replaced after
+ * it, are kept in a separate recheck set: the watermark moves past them, and each run
+ * verifies just those that are now stored (with the block after each, whose link
+ * depends on them). Problems are kept per block and cleared once it verifies cleanly.
+ */
+public class ChainVerifier {
+
+    private static final Path STATE_FILE = Path.of("data/verifier/state");
+    private static final int RANGE_SIZE = 256;
+    // Blocks with problems kept for /verifier/status
+    private static final int MAX_REPORTED_PROBLEMS = 1000;
+    private static final String RECHECK_PREFIX = "recheck";
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Config.VERIFIER_PARALLELISM, p -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+        thread.setName("chain-verifier-" + thread.getPoolIndex());
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private static final AtomicBoolean running = new AtomicBoolean();
+    private static final AtomicLong verifiedInRun = new AtomicLong();
+    // Ids at or below the watermark to verify again: missing when checked, or replaced since
+    private static final ConcurrentSkipListSet<Long> recheck = new ConcurrentSkipListSet<>();
+    // Problems by block id; guarded by itself
+    private static final TreeMap<Long, List<String>> problems = new TreeMap<>();
+    private static volatile long watermark = -1;
+    private static volatile long runFrom = -1;
+    private static volatile long runTo = -1;
+    private static volatile long lastRunMillis;
+    private static volatile long lastRunFinishedAt;
+
+    public static void startVerifierMonitor() {
+        loadState();
+        BlockStorage.addReplacedBlockListener(recheck::add);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                System.err.println("❌ [Verifier] Run failed: " + e.getMessage());
+            }
+        }, 60, Config.VERIFIER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Verifies everything between the watermark and the chain tip, plus the stored blocks
+     * of the recheck set; no-op if a run is in progress.
+     */
+    public static void runOnce() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long from = watermark + 1;
+            long to = BlockStorage.getLatestBlockId();
+            // The range run covers rechecks above the watermark; missing blocks wait until they are stored
+            recheck.removeIf(id -> id >= from);
+            List<Long> rechecked = new ArrayList<>();
+            for (long id : recheck) {
+                if (BlockStorage.blockExists(id)) {
+                    rechecked.add(id);
+                }
+            }
+            if (to < from && rechecked.isEmpty()) {
+                return;
+            }
+
+            runFrom = from;
+            runTo = to;
+            verifiedInRun.set(0);
+            long start = System.nanoTime();
+            System.out.println("🔎 [Verifier] Verifying " + (to < from ? "no new blocks" : "blocks " + from + ".." + to)
+                    + " and rechecking " + rechecked.size() + " block(s)");
+
+            Map<Long, List<String>> found = to < from ? new TreeMap<>() : pool.invoke(new RangeTask(from, to));
+            List<long[]> checked = new ArrayList<>();
+            if (to >= from) {
+                checked.add(new long[]{from, to});
+            }
+            for (long id : rechecked) {
+                // Removed first, so a block replaced again while this runs is rechecked next time
+                recheck.remove(id);
+                long through = Math.min(id + 1, from - 1);
+                merge(found, pool.invoke(new RangeTask(id, through)));
+                checked.add(new long[]{id, through});
+            }
+
+            lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+            lastRunFinishedAt = System.currentTimeMillis();
+            int problemCount = 0;
+            synchronized (problems) {
+                // Replace the problems of every block verified in this run, clearing those now clean
+                for (long[] range : checked) {
+                    problems.subMap(range[0], true, range[1], true).clear();
+                }
+                for (Map.Entry<Long, List<String>> entry : found.entrySet()) {
+                    problemCount += entry.getValue().size();
+                    if (problems.containsKey(entry.getKey()) || problems.size() < MAX_REPORTED_PROBLEMS) {
+                        problems.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            watermark = Math.max(watermark, to);
+            saveState();
+
+            System.out.println("🔎 [Verifier] Verified " + verifiedInRun.get() + " block(s) in " + lastRunMillis + " ms, "
+                    + problemCount + " problem(s) found");
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private static void merge(Map<Long, List<String>> into, Map<Long, List<String>> from) {
+        for (Map.Entry<Long, List<String>> entry : from.entrySet()) {
+            List<String> list = into.computeIfAbsent(entry.getKey(), id -> new ArrayList<>());
+            for (String problem : entry.getValue()) {
+                if (!list.contains(problem)) {
+                    list.add(problem);
+                }
+            }
+        }
+    }
+
+    public static Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("verified_up_to", watermark);
+        status.put("chain_tip", BlockStorage.getLatestBlockId());
+        status.put("run_from", runFrom);
+        status.put("run_to", runTo);
+        status.put("run_progress", verifiedInRun.get());
+        status.put("last_run_ms", lastRunMillis);
+        status.put("last_run_finished_at", lastRunFinishedAt);
+        status.put("parallelism", pool.getParallelism());
+        status.put("recheck_pending", new ArrayList<>(recheck));
+        synchronized (problems) {
+            List<String> all = new ArrayList<>();
+            problems.values().forEach(all::addAll);
+            status.put("problems", all);
+        }
+        return status;
+    }
+
+    private static final class RangeTask extends RecursiveTask<Map<Long, List<String>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        RangeTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, List<String>> compute() {
+            if (to - from + 1 <= RANGE_SIZE) {
+                Map<Long, List<String>> found = verifyRange(from, to);
+                throttle();
+                return found;
+            }
+            long mid = from + (to - from) / 2;
+            RangeTask left = new RangeTask(from, mid);
+            RangeTask right = new RangeTask(mid + 1, to);
+            left.fork();
+            Map<Long, List<String>> found = right.compute();
+            merge(found, left.join());
+            return found;
+        }
+    }
+
+    private static Map<Long, List<String>> verifyRange(long from, long to) {
+        Map<Long, List<String>> found = new TreeMap<>();
+        String previousHash = null;
+        if (from == 0) {
+            previousHash = "genesis";
+        } else {
+            Block previous = load(from - 1, found);
+            if (previous != null) {
+                previousHash = previous.getHash();
+            }
+        }
+
+        for (long id = from; id <= to; id++) {
+            Block block = load(id, found);
+            if (block == null) {
+                previousHash = null;
+                continue;
+            }
+            verifyBlock(block, previousHash, found);
+            previousHash = block.getHash();
+            verifiedInRun.incrementAndGet();
+        }
+        return found;
+    }
+
+    private static Block load(long id, Map<Long, List<String>> found) {
+        try {
+            return BlockStorage.loadBlockUncached(id);
+        } catch (Exception e) {
+            report(found, id, "missing or unreadable (" + e.getMessage() + ")");
+            recheck.add(id);
+            return null;
+        }
+    }
+
+    private static void verifyBlock(Block block, String expectedPreviousHash, Map<Long, List<String>> found) {
+        long id = block.getId();
+
+        if (expectedPreviousHash != null && !expectedPreviousHash.equals(block.getPreviousHash())) {
+            report(found, id, "broken link, previous_hash " + block.getPreviousHash()
+                    + " does not match block " + (id - 1) + " hash " + expectedPreviousHash);
+        }
+
+        String merkleRoot = MerkleUtil.computeMerkleRoot(block.getAuditsList());
+        if (!merkleRoot.equals(block.getMerkleRoot())) {
+            report(found, id, "Merkle root mismatch");
+        }
+
+        String hash = HashUtil.computeBlockHash((int) id, block.getPreviousHash(), block.getAuditsList(), block.getMerkleRoot());
+        if (!hash.equals(block.getHash())) {
+            report(found, id, "block hash mismatch");
+        }
+
+        for (CommonProto.FileAudit audit : block.getAuditsList()) {
+            if (!SignatureVerifier.verify(audit)) {
+                report(found, id, "invalid signature on audit " + audit.getReqId());
+            }
+        }
+    }
+
+    private static void report(Map<Long, List<String>> found, long id, String problem) {
+        String line = "block " + id + ": " + problem;
+        List<String> list = found.computeIfAbsent(id, k -> new ArrayList<>());
+        if (!list.contains(line)) {
+            list.add(line);
+        }
+    }
+
+    private static void throttle() {
+        try {
+            Thread.sleep(Config.VERIFIER_PAUSE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // State file: first line is the watermark, then an optional "recheck <id> <id> ..." line,
+    // then every reported problem ("block <id>: ...")
+    private static void loadState() {
+        try {
+            if (!Files.exists(STATE_FILE)) {
+                return;
+            }
+            List<String> lines = Files.readAllLines(STATE_FILE);
+            if (!lines.isEmpty()) {
+                watermark = Long.parseLong(lines.get(0).trim());
+            }
+            synchronized (problems) {
+                for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+                    if (line.startsWith(RECHECK_PREFIX)) {
+                        for (String id : line.substring(RECHECK_PREFIX.length()).trim().split("\\s+")) {
+                            if (!id.isEmpty()) {
+                                recheck.add(Long.parseLong(id));
+                            }
+                        }
+                    } else if (line.startsWith("block ") && line.indexOf(':') > 6) {
+                        long id = Long.parseLong(line.substring(6, line.indexOf(':')));
+                        problems.computeIfAbsent(id, k -> new ArrayList<>()).add(line);
+                    }
+                }
+            }
+            System.out.println("🔎 [Verifier] Chain verified up to block " + watermark);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("⚠️ [Verifier] Ignoring unreadable state file: " + e.getMessage());
+        }
+    }
+
+    private static void saveState() {
+        try {
+            Files.createDirectories(STATE_FILE.getParent());
+            Path temp = STATE_FILE.resolveSibling("state.tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+                writer.write(Long.toString(watermark));
+                writer.newLine();
+                StringBuilder ids = new StringBuilder(RECHECK_PREFIX);
+                for (long id : recheck) {
+                    ids.append(' ').append(id);
+                }
+                writer.write(ids.toString());
+                writer.newLine();
+                synchronized (problems) {
+                    for (List<String> blockProblems : problems.values()) {
+                        for (String problem : blockProblems) {
+                            writer.write(problem);
+                            writer.newLine();
+                        }
+                    }
+                }
+            }
+            Files.move(temp, STATE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("❌ [Verifier] Failed to save state: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.codecatalyst.auditchain.util;
+
+import com.codecatalyst.auditchain.proto.common.CommonProto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Golden vectors for the canonical audit JSON. Each expected string (and its SHA-256,
+ * which is the audit's Merkle leaf hash) is what the Go client's json.Marshal of the
+ * signing map produces (Go 1.22+, which writes \b and \f as short escapes); a change
+ * here breaks every signature and block hash on the chain.
+ */
+class CanonicalAuditEncoderTest {
+
+    private static CommonProto.FileAudit audit(String reqId, String fileId, String fileName,
+                                               String userId, String userName, int accessType, long timestamp) {
+        return CommonProto.FileAudit.newBuilder()
+                .setReqId(reqId)
+                .setFileInfo(CommonProto.FileInfo.newBuilder().setFileId(fileId).setFileName(fileName))
+                .setUserInfo(CommonProto.UserInfo.newBuilder().setUserId(userId).setUserName(userName))
+                .setAccessTypeValue(accessType)
+                .setTimestamp(timestamp)
+                .setSignature("not part of the encoding")
+                .setPublicKey("not part of the encoding")
+                .build();
+    }
+
+    private static void assertGolden(CommonProto.FileAudit audit, String json, String sha256) {
+        assertEquals(json, CanonicalAuditEncoder.encodeToString(audit));
+        assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), CanonicalAuditEncoder.encode(audit));
+        assertEquals(sha256, Hex.encode(MerkleEngine.leafHash(audit)));
+    }
+
+    @Test
+    void plainAudit() {
+        assertGolden(audit("req-001", "f004", "config.json", "u003", "charlie", 3, 1747105079L),
+                "{\"access_type\":3,\"file_info\":{\"file_id\":\"f004\",\"file_name\":\"config.json\"},"
+                        + "\"req_id\":\"req-001\",\"timestamp\":1747105079,"
+                        + "\"user_info\":{\"user_id\":\"u003\",\"user_name\":\"charlie\"}}",
+                "cb072ecf7fe748227c286fcd3e368a45a8f55eba6213e75537a8600e19bafb04");
+    }
+
+    @Test
+    void emptyFields() {
+        assertGolden(audit("", "", "", "", "", 0, 0),
+                "{\"access_type\":0,\"file_info\":{\"file_id\":\"\",\"file_name\":\"\"},"
+                        + "\"req_id\":\"\",\"timestamp\":0,\"user_info\":{\"user_id\":\"\",\"user_name\":\"\"}}",
+                "53d34d8f51fdfd24843243f4891a066c060211e3a57b166dede9161d42775406");
+    }
+
+    @Test
+    void quotesAndBackslashes() {
+        assertGolden(audit("r\"q\\1", "f/1", "a\"b\\c.txt", "u1", "o'neil", 1, -5),
+                "{\"access_type\":1,\"file_info\":{\"file_id\":\"f/1\",\"file_name\":\"a\\\"b\\\\c.txt\"},"
+                        + "\"req_id\":\"r\\\"q\\\\1\",\"timestamp\":-5,"
+                        + "\"user_info\":{\"user_id\":\"u1\",\"user_name\":\"o'neil\"}}",
+                "95dee20d74ccb8b7612f5ea840fd7263310c2af37dae03795c58dedcd8d75507");
+    }
+
+    @Test
+    void controlCharacters() {
+        assertGolden(audit("r2", "f2", "line\nbreak\ttab\rcr\bbs\ffeed\u0001\u001f", "u2", "x", 2, Long.MAX_VALUE),
+                "{\"access_type\":2,\"file_info\":{\"file_id\":\"f2\","
+                        + "\"file_name\":\"line\\nbreak\\ttab\\rcr\\bbs\\ffeed\\u0001\\u001f\"},"
+                        + "\"req_id\":\"r2\",\"timestamp\":9223372036854775807,"
+                        + "\"user_info\":{\"user_id\":\"u2\",\"user_name\":\"x\"}}",
+                "93d9a398f98640ff8a738b0f8b8bf75126309a068b5b79aee698b85ee90b820e");
+    }
+
+    @Test
+    void htmlCharactersAreEscaped() {
+        assertGolden(audit("r3", "f3", "<script>&amp;</script>", "u3", "a=b", 4, Long.MIN_VALUE),
+                "{\"access_type\":4,\"file_info\":{\"file_id\":\"f3\","
+                        + "\"file_name\":\"\\u003cscript\\u003e\\u0026amp;\\u003c/script\\u003e\"},"
+                        + "\"req_id\":\"r3\",\"timestamp\":-9223372036854775808,"
+                        + "\"user_info\":{\"user_id\":\"u3\",\"user_name\":\"a=b\"}}",
+                "17c1a2ea35490e6387817f4e652f07dc8837fa114fbd1f50d1db5769f7f80e49");
+    }
+
+    @Test
+    void nonAsciiAndLineSeparators() {
+        assertGolden(audit("r4", "f4", "r\u00e9sum\u00e9 \u65e5\u672c \uD83D\uDE00", "u4", "\u2028sep\u2029", 1, 1),
+                "{\"access_type\":1,\"file_info\":{\"file_id\":\"f4\","
+                        + "\"file_name\":\"r\u00e9sum\u00e9 \u65e5\u672c \uD83D\uDE00\"},"
+                        + "\"req_id\":\"r4\",\"timestamp\":1,"
+                        + "\"user_info\":{\"user_id\":\"u4\",\"user_name\":\"\\u2028sep\\u2029\"}}",
+                "eea24fe861278f1d336f82af6f49402352afe0cc6132b7237c1a83293763cc67");
+    }
+
+    @Test
+    void digestUpdateMatchesEncode() throws Exception {
+        CommonProto.FileAudit audit = audit("req-001", "f004", "config.json", "u003", "charlie", 3, 1747105079L);
+        MessageDigest streamed = MessageDigest.getInstance("SHA-256");
+        CanonicalAuditEncoder.update(streamed, audit);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(CanonicalAuditEncoder.encode(audit));
+        assertArrayEquals(expected, streamed.digest());
+    }
+}